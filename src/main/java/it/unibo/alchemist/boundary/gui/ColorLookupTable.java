@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2010-2015, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.gui;
+
+import java.awt.Color;
+import java.util.function.DoubleToIntFunction;
+
+/**
+ * A color scale sampled at evenly spaced points of [0, 1], so that mapping a
+ * value to a color costs an array access, both in ARGB form and as a
+ * {@link Color}. Tables are immutable, and can be shared by threads.
+ */
+public final class ColorLookupTable {
+
+	/**
+	 * Default number of entries: one per level of an 8 bit channel.
+	 */
+	public static final int DEFAULT_SIZE = 256;
+
+	private final int[] argb;
+	private final Color[] colors;
+
+	private ColorLookupTable(final int[] entries) {
+		argb = entries;
+		colors = new Color[entries.length];
+		for (int i = 0; i < entries.length; i++) {
+			colors[i] = new Color(entries[i], true);
+		}
+	}
+
+	/**
+	 * @param size
+	 *            the number of entries, at least 2
+	 * @param scale
+	 *            maps a value in [0, 1] to a color, in ARGB form
+	 * @return a new table
+	 */
+	public static ColorLookupTable build(final int size, final DoubleToIntFunction scale) {
+		if (size < 2) {
+			throw new IllegalArgumentException("A table needs at least two entries, got " + size);
+		}
+		final int[] colors = new int[size];
+		for (int i = 0; i < size; i++) {
+			colors[i] = scale.applyAsInt((double) i / (size - 1));
+		}
+		return new ColorLookupTable(colors);
+	}
+
+	/**
+	 * @param value
+	 *            a value in [0, 1]. Values outside are clamped, NaN is
+	 *            mapped to 0
+	 * @return the color of the closest entry, in ARGB form
+	 */
+	public int getARGB(final double value) {
+		return argb[indexOf(value)];
+	}
+
+	/**
+	 * @param value
+	 *            a value in [0, 1]. Values outside are clamped, NaN is
+	 *            mapped to 0
+	 * @return the color of the closest entry. The same instance is returned
+	 *         for all the values of an entry
+	 */
+	public Color getColor(final double value) {
+		return colors[indexOf(value)];
+	}
+
+	private int indexOf(final double value) {
+		if (!(value > 0)) {
+			return 0;
+		}
+		if (value >= 1) {
+			return argb.length - 1;
+		}
+		return (int) Math.round(value * (argb.length - 1));
+	}
+
+	/**
+	 * @return the number of entries
+	 */
+	public int size() {
+		return argb.length;
+	}
+
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2010-2015, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.gui;
+
+import java.awt.Color;
+
+/**
+ * Color scales for mapping a value to a color. Besides altering a single
+ * {@link ColorChannel} of a base color, the perceptually uniform scales of
+ * matplotlib are available, approximated by linear interpolation between
+ * nine evenly spaced stops.
+ */
+public enum Colormap {
+
+	/**
+	 * Alters a channel of the base color, see {@link ColorChannel}.
+	 */
+	Channel(),
+	// CHECKSTYLE:OFF
+	/**
+	 * Dark blue to yellow, through green.
+	 */
+	Viridis(0x440154, 0x472C7A, 0x3B518B, 0x2C718E, 0x21908D, 0x27AD81, 0x5CC863, 0xAADC32, 0xFDE725),
+	/**
+	 * Black to light yellow, through purple and pink.
+	 */
+	Magma(0x000004, 0x1C1044, 0x4F127B, 0x812581, 0xB5367A, 0xE55064, 0xFB8761, 0xFEC287, 0xFCFDBF),
+	/**
+	 * Black to light yellow, through purple and orange.
+	 */
+	Inferno(0x000004, 0x1F0C48, 0x550F6D, 0x88226A, 0xBA3655, 0xE35933, 0xF98E09, 0xF9CB35, 0xFCFFA4),
+	/**
+	 * Dark blue to yellow, through purple and orange.
+	 */
+	Plasma(0x0D0887, 0x4C02A1, 0x7E03A8, 0xA92395, 0xCC4778, 0xE66C5C, 0xF89540, 0xFDC527, 0xF0F921),
+	/**
+	 * Dark blue to yellow, readable with color vision deficiencies.
+	 */
+	Cividis(0x00224E, 0x123570, 0x3B496C, 0x575D6D, 0x707173, 0x8A8779, 0xA69D75, 0xC4B56C, 0xFEE838);
+	// CHECKSTYLE:ON
+
+	private static final int RED_SHIFT = 16;
+	private static final int GREEN_SHIFT = 8;
+	private static final int ALPHA_SHIFT = 24;
+	private static final int CHANNEL_MASK = 0xFF;
+
+	private final int[] stops;
+
+	private Colormap(final int... rgb) {
+		stops = rgb;
+	}
+
+	/**
+	 * Builds the table of this scale. Values are mapped to colors in [0, 1],
+	 * from the first color of the scale to the last one, or the other way
+	 * around if reversed.
+	 * 
+	 * @param base
+	 *            the base color. The channel scale alters it, the others only
+	 *            use its alpha
+	 * @param channel
+	 *            the channel to alter, for the channel scale
+	 * @param reverse
+	 *            true to reverse the scale
+	 * @param size
+	 *            the number of entries
+	 * @return the lookup table
+	 */
+	public ColorLookupTable lookupTable(final Color base, final ColorChannel channel, final boolean reverse, final int size) {
+		return ColorLookupTable.build(size, t -> {
+			final double v = reverse ? 1 - t : t;
+			return stops.length == 0 ? channel.alter(base, (float) v).getRGB() : interpolate(v, base.getAlpha());
+		});
+	}
+
+	private int interpolate(final double v, final int alpha) {
+		final double pos = v * (stops.length - 1);
+		final int i = Math.min(stops.length - 2, (int) pos);
+		final double f = pos - i;
+		final int from = stops[i];
+		final int to = stops[i + 1];
+		return alpha << ALPHA_SHIFT
+				| mix(from, to, f, RED_SHIFT) << RED_SHIFT
+				| mix(from, to, f, GREEN_SHIFT) << GREEN_SHIFT
+				| mix(from, to, f, 0);
+	}
+
+	private static int mix(final int from, final int to, final double f, final int shift) {
+		final int a = (from >> shift) & CHANNEL_MASK;
+		final int b = (to >> shift) & CHANNEL_MASK;
+		return (int) Math.round(a + (b - a) * f);
+	}
+
+}
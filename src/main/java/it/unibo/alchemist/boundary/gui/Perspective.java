@@ -61,6 +61,7 @@ public class Perspective<T> extends JPanel implements ChangeListener, ActionList
 	private final SimControlPanel scp = SimControlPanel.createControlPanel(null);
 	private final JEffectsTab<T> effectsTab;
 	private transient ISimulation<T> sim;
+	private transient RealTimePacer<T> pacer;
 	private final StatusBar status;
 	private File xml;
 
@@ -105,8 +106,12 @@ public class Perspective<T> extends JPanel implements ChangeListener, ActionList
 			}
 			remove((Component) main);
 		}
+		if (sim != null && pacer != null) {
+			sim.removeOutputMonitor(pacer);
+		}
 		main = null;
 		sim = null;
+		pacer = null;
 		effectsTab.setMonitor(null);
 	}
 
@@ -151,6 +156,7 @@ public class Perspective<T> extends JPanel implements ChangeListener, ActionList
 			default:
 				break;
 			}
+			updatePacer();
 		} else {
 			dispose();
 		}
@@ -217,6 +223,9 @@ public class Perspective<T> extends JPanel implements ChangeListener, ActionList
 			sim = new Simulation<>(env, new DoubleTime(Double.POSITIVE_INFINITY), parallel);
 			bar.setSimulation(sim);
 			scp.setSimulation(sim);
+			pacer = new RealTimePacer<>(sim);
+			updatePacer();
+			sim.addOutputMonitor(pacer);
 			final Thread simThread = new Thread(sim);
 			createMonitor();
 			simThread.start();
@@ -233,6 +242,13 @@ public class Perspective<T> extends JPanel implements ChangeListener, ActionList
 		}
 	}
 	
+	private void updatePacer() {
+		if (pacer != null) {
+			pacer.setSpeed(bar.getSpeed());
+			pacer.setEnabled(bar.getReactivityStatus().equals(Status.REAL_TIME));
+		}
+	}
+
 	private void processError(final Throwable e) {
 		SwingUtilities.invokeLater(() -> {
 			bar.setFileOK(false);
@@ -282,6 +298,7 @@ public class Perspective<T> extends JPanel implements ChangeListener, ActionList
 		if (bar.getReactivityStatus().equals(Status.USER_SELECTED)) {
 			main.setStep(bar.getReactivity());
 		}
+		updatePacer();
 	}
 
 }
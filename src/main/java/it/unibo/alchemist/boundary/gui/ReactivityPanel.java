@@ -38,16 +38,25 @@ public class ReactivityPanel extends JTapeGroup implements ActionListener, ItemL
 	private static final int SLIDE_MAX = 20;
 
 	private static final int SLIDE_SIZE = 150;
+	/*
+	 * The speed slider is logarithmic: each notch multiplies the speed by
+	 * 10^(1 / SPEED_NOTCHES_PER_DECADE).
+	 */
+	private static final int SPEED_NOTCHES_PER_DECADE = 10;
+	private static final int SPEED_MIN = (int) Math.round(Math.log10(RealTimePacer.MIN_SPEED) * SPEED_NOTCHES_PER_DECADE);
+	private static final int SPEED_MAX = (int) Math.round(Math.log10(RealTimePacer.MAX_SPEED) * SPEED_NOTCHES_PER_DECADE);
 	private final JTapeSection stack1 = new JTapeFeatureStack();
 
 	// private final JTapeSection stack2 = new JTapeFeatureStack();
 	private final JTapeSection buttMF = new JTapeMainFeature();
 	private final JTapeSection sliderMF = new JTapeMainFeature();
+	private final JTapeSection speedMF = new JTapeMainFeature();
 	// private final JButton button;
 	private final JToggleButton btnMax;
 	private final JToggleButton btnReal;
 	private final JToggleButton btnUser;
 	private final JSlider slider = new JSlider(0, SLIDE_MAX, SLIDE_MAX / 2);
+	private final JSlider speed = new JSlider(SPEED_MIN, SPEED_MAX, 0);
 	private final Icon max = loadScaledImage("/oxygen/status/user-online.png");
 	private final Icon real = loadScaledImage("/oxygen/status/user-invisible.png");
 	private final Icon user = loadScaledImage("/oxygen/status/user-offline.png");
@@ -63,8 +72,8 @@ public class ReactivityPanel extends JTapeGroup implements ActionListener, ItemL
 		 */
 		MAX_REACTIVITY,
 		/**
-		 * The GUI tries to run in sync with the real time, keeping at least 25
-		 * frames per second.
+		 * The simulation is kept in sync with the real time, sped up or slowed
+		 * down as set by the speed slider.
 		 */
 		REAL_TIME,
 		/**
@@ -79,6 +88,7 @@ public class ReactivityPanel extends JTapeGroup implements ActionListener, ItemL
 	public ReactivityPanel() {
 		super(Res.get(Res.REACTIVITY));
 		slider.setPreferredSize(new Dimension(SLIDE_SIZE, slider.getHeight()));
+		speed.setPreferredSize(new Dimension(SLIDE_SIZE, speed.getHeight()));
 		// setLayout(new BoxLayout(this, BoxLayout.X_AXIS));
 		// button = new JButton(max);
 		btnMax = new JToggleButton(Res.get(Res.MAX_REACTIVITY), max, true);
@@ -91,15 +101,20 @@ public class ReactivityPanel extends JTapeGroup implements ActionListener, ItemL
 		btnReal.addItemListener(this);
 		btnUser.addItemListener(this);
 		slider.setEnabled(false);
+		speed.setEnabled(false);
+		speed.addChangeListener(e -> updateSpeedToolTip());
+		updateSpeedToolTip();
 
 		stack1.registerFeature(btnMax);
 		stack1.registerFeature(btnReal);
 		buttMF.registerFeature(btnUser);
 		sliderMF.registerFeature(slider);
+		speedMF.registerFeature(speed);
 
 		registerSection(stack1);
 		registerSection(buttMF);
 		registerSection(sliderMF);
+		registerSection(speedMF);
 	}
 
 	@Override
@@ -133,6 +148,7 @@ public class ReactivityPanel extends JTapeGroup implements ActionListener, ItemL
 	 */
 	public void addChangeLister(final ChangeListener c) {
 		slider.addChangeListener(c);
+		speed.addChangeListener(c);
 	}
 
 	/**
@@ -149,6 +165,14 @@ public class ReactivityPanel extends JTapeGroup implements ActionListener, ItemL
 		return (int) Math.pow(2, slider.getValue());
 	}
 
+	/**
+	 * @return how many simulated seconds should correspond to a wall clock
+	 *         second in {@link Status#REAL_TIME} mode
+	 */
+	public double getSpeed() {
+		return Math.pow(10, (double) speed.getValue() / SPEED_NOTCHES_PER_DECADE);
+	}
+
 	@Override
 	public void itemStateChanged(final ItemEvent e) {
 		final Object src = e.getSource();
@@ -158,20 +182,27 @@ public class ReactivityPanel extends JTapeGroup implements ActionListener, ItemL
 				btnReal.setSelected(false);
 				btnUser.setSelected(false);
 				slider.setEnabled(false);
+				speed.setEnabled(false);
 			} else if (src.equals(btnReal)) {
 				status = Status.REAL_TIME;
 				btnMax.setSelected(false);
 				btnUser.setSelected(false);
 				slider.setEnabled(false);
+				speed.setEnabled(true);
 			} else if (src.equals(btnUser)) {
 				status = Status.USER_SELECTED;
 				btnReal.setSelected(false);
 				btnMax.setSelected(false);
 				slider.setEnabled(true);
+				speed.setEnabled(false);
 			}
 		}
 	}
 
+	private void updateSpeedToolTip() {
+		speed.setToolTipText(Res.get(Res.SPEED) + ": " + String.format("%.4gx", getSpeed()));
+	}
+
 	/**
 	 * Sets the command name for the action event fired by this component.
 	 * 
@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2010-2015, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.gui;
+
+import it.unibo.alchemist.boundary.interfaces.OutputMonitor;
+import it.unibo.alchemist.core.interfaces.ISimulation;
+import it.unibo.alchemist.core.interfaces.Status;
+import it.unibo.alchemist.model.interfaces.IEnvironment;
+import it.unibo.alchemist.model.interfaces.IReaction;
+import it.unibo.alchemist.model.interfaces.ITime;
+
+import java.util.Objects;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Keeps a simulation in sync with the wall clock, possibly sped up or slowed
+ * down. It is attached once per simulation, and it is the only monitor
+ * allowed to hold the simulation thread back: displays just draw whatever
+ * the simulation reached.
+ * 
+ * Every step is given an absolute deadline, computed from the simulated time
+ * elapsed since a reference point, so that the errors of the single waits do
+ * not accumulate. When the simulation falls behind schedule for too long
+ * (because it was paused, or because it is slower than requested), the
+ * reference point is moved to the current step instead of letting the
+ * simulation run unpaced to catch up.
+ * 
+ * @param <T>
+ *            concentration type
+ */
+public final class RealTimePacer<T> implements OutputMonitor<T> {
+
+	/**
+	 * The slowest speed allowed, as a multiple of the real time.
+	 */
+	public static final double MIN_SPEED = 0.1;
+	/**
+	 * The fastest speed allowed, as a multiple of the real time.
+	 */
+	public static final double MAX_SPEED = 1000;
+	private static final long serialVersionUID = -2581297438105724516L;
+	private static final double NANOS_PER_SECOND = 1e9;
+	/*
+	 * How far behind schedule the simulation can be before the reference
+	 * point is moved.
+	 */
+	private static final long MAX_LAG = 200_000_000L;
+	/*
+	 * Maximum length of a single wait, so that pauses, speed changes and
+	 * stops are honored while waiting for a distant deadline.
+	 */
+	private static final long MAX_PARK = 50_000_000L;
+
+	private final transient ISimulation<T> simulation;
+	private volatile boolean enabled;
+	private volatile double speed = 1;
+	private volatile boolean rebase = true;
+	/*
+	 * Simulation thread only.
+	 */
+	private long wallOrigin;
+	private double simOrigin;
+
+	/**
+	 * @param sim
+	 *            the simulation to pace
+	 */
+	public RealTimePacer(final ISimulation<T> sim) {
+		simulation = Objects.requireNonNull(sim);
+	}
+
+	/**
+	 * @return true if the simulation is being paced
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * @param enable
+	 *            true to keep the simulation in sync with the wall clock,
+	 *            false to let it run as fast as possible
+	 */
+	public void setEnabled(final boolean enable) {
+		if (enable && !enabled) {
+			rebase = true;
+		}
+		enabled = enable;
+	}
+
+	/**
+	 * @return how many simulated seconds correspond to a wall clock second
+	 */
+	public double getSpeed() {
+		return speed;
+	}
+
+	/**
+	 * @param multiplier
+	 *            how many simulated seconds correspond to a wall clock
+	 *            second, in [{@link #MIN_SPEED}, {@link #MAX_SPEED}]
+	 */
+	public void setSpeed(final double multiplier) {
+		if (!(multiplier >= MIN_SPEED && multiplier <= MAX_SPEED)) {
+			throw new IllegalArgumentException("The speed must be in [" + MIN_SPEED + ", " + MAX_SPEED + "], got " + multiplier);
+		}
+		speed = multiplier;
+		rebase = true;
+	}
+
+	@Override
+	public void initialized(final IEnvironment<T> env) {
+		rebase = true;
+	}
+
+	@Override
+	public void stepDone(final IEnvironment<T> env, final IReaction<T> r, final ITime time, final long step) {
+		if (!enabled) {
+			return;
+		}
+		final double simTime = time.toDouble();
+		if (Double.isInfinite(simTime) || Double.isNaN(simTime)) {
+			return;
+		}
+		long now = System.nanoTime();
+		if (rebase || simTime < simOrigin) {
+			moveOrigin(now, simTime);
+			return;
+		}
+		final long deadline = wallOrigin + (long) ((simTime - simOrigin) / speed * NANOS_PER_SECOND);
+		if (now - deadline > MAX_LAG) {
+			moveOrigin(now, simTime);
+			return;
+		}
+		while (deadline - now > 0) {
+			if (!enabled || rebase || simulation.getStatus() != Status.RUNNING) {
+				/*
+				 * Paused, stopped or reconfigured: restart from this step.
+				 */
+				moveOrigin(System.nanoTime(), simTime);
+				return;
+			}
+			LockSupport.parkNanos(this, Math.min(deadline - now, MAX_PARK));
+			if (Thread.currentThread().isInterrupted()) {
+				return;
+			}
+			now = System.nanoTime();
+		}
+	}
+
+	private void moveOrigin(final long now, final double simTime) {
+		wallOrigin = now;
+		simOrigin = simTime;
+		rebase = false;
+	}
+
+	@Override
+	public void finished(final IEnvironment<T> env, final ITime time, final long step) {
+		rebase = true;
+	}
+
+}
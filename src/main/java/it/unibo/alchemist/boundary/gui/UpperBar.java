@@ -210,6 +210,13 @@ public class UpperBar extends JTape {
 		return reactivity.getUserReactivity();
 	}
 
+	/**
+	 * @return the real time speed multiplier
+	 */
+	public double getSpeed() {
+		return reactivity.getSpeed();
+	}
+
 	/**
 	 * @return the reactivity status
 	 */
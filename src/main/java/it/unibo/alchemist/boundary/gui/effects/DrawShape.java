@@ -10,12 +10,22 @@ package it.unibo.alchemist.boundary.gui.effects;
 
 import it.unibo.alchemist.SupportedIncarnations;
 import it.unibo.alchemist.boundary.gui.ColorChannel;
+import it.unibo.alchemist.boundary.gui.ColorLookupTable;
+import it.unibo.alchemist.boundary.gui.Colormap;
 import it.unibo.alchemist.model.interfaces.IMolecule;
 import it.unibo.alchemist.model.interfaces.INode;
-import it.unibo.alchemist.utils.L;
 
 import java.awt.Color;
 import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.IntPredicate;
+import java.util.function.IntToDoubleFunction;
 
 import org.apache.commons.math3.util.FastMath;
 import org.danilopianini.lang.HashUtils;
@@ -63,6 +73,16 @@ public class DrawShape implements Effect {
 	private static final int PROPERTY_SCALE = 10;
 	private static final int SCALE_DIFF = MAX_SCALE - MIN_SCALE;
 	private static final int SCALE_INITIAL = (SCALE_DIFF) / 2 + MIN_SCALE;
+	/*
+	 * Room around a sprite for the antialiased border and the stroke.
+	 */
+	private static final int SPRITE_PADDING = 1;
+	private static final int MODE_SHIFT = 17;
+	private static final int ANTIALIAS_SHIFT = 16;
+	private static final int SIZE_X_SHIFT = 8;
+	private static final int MAX_OUTLIERS = 25;
+	private static final int MAX_SMOOTHING = 95;
+	private static final double PERCENT = 100;
 
 	private static final long serialVersionUID = 1993455990254876325L;
 
@@ -94,74 +114,543 @@ public class DrawShape implements Effect {
 	private ColorChannel c = ColorChannel.Alpha;
 	@ExportForGUI(nameToExport = "Reverse effect")
 	private boolean reverse;
+	@ExportForGUI(nameToExport = "Colormap")
+	private Colormap colormap = Colormap.Channel;
 	@ExportForGUI(nameToExport = "Property order of magnitude")
 	private RangedInteger propoom = new RangedInteger(-PROPERTY_SCALE, PROPERTY_SCALE, 0);
 	@ExportForGUI(nameToExport = "Minimum property value")
 	private RangedInteger minprop = new RangedInteger(-PROPERTY_SCALE, PROPERTY_SCALE, 0);
 	@ExportForGUI(nameToExport = "Maximum property value")
 	private RangedInteger maxprop = new RangedInteger(-PROPERTY_SCALE, PROPERTY_SCALE, PROPERTY_SCALE);
+	@ExportForGUI(nameToExport = "Automatic property range")
+	private boolean autoRange;
+	@ExportForGUI(nameToExport = "Outliers excluded from the automatic range (%)")
+	private RangedInteger outliers = new RangedInteger(0, MAX_OUTLIERS, 0);
+	@ExportForGUI(nameToExport = "Automatic range smoothing (%)")
+	private RangedInteger rangeSmoothing = new RangedInteger(0, MAX_SMOOTHING, 0);
 	
-	private Color colorCache = Color.BLACK;
-	private transient IMolecule molecule;
+	private volatile Color colorCache = Color.BLACK;
+	private transient volatile IMolecule molecule;
+	private transient CompletableFuture<IMolecule> moleculeLookup;
 	private transient Object molStringCached;
 	private transient SupportedIncarnations prevIncarnation = incarnation;
+	private transient Caches caches;
+	private transient volatile Runnable updateListener;
 
 	@Override
 	public void apply(final Graphics2D g, final INode<?> n, final int x, final int y) {
-		if (!HashUtils.pointerEquals(molString,molStringCached) || !incarnation.equals(prevIncarnation)) {
-			molStringCached = molString;
-			prevIncarnation = incarnation;
-			/*
-			 * Process in a separate thread: if it fails, does not kill EDT.
-			 */
-			final Thread th = new Thread(() -> molecule = incarnation.createMolecule(molString));
-			th.start();
-			try {
-				th.join();
-			} catch (InterruptedException e) {
-				L.error(e);
-			}
-		}
-		if (!molFilter || (molecule != null && n.contains(molecule))) {
+		updateMolecule();
+		if (accepts(n)) {
 			final Color toRestore = g.getColor();
-			colorCache = new Color(red.getVal(), green.getVal(), blue.getVal(), alpha.getVal());
-			Color newcolor = colorCache;
-			if (molPropertyFilter && molecule != null) {
-				final int minV = (int) (minprop.getVal() * FastMath.pow(PROPERTY_SCALE, propoom.getVal()));
-				final int maxV = (int) (maxprop.getVal() * FastMath.pow(PROPERTY_SCALE, propoom.getVal()));
-				if (minV < maxV) {
-					double propval = incarnation.getProperty(n, molecule, property);
-					propval = Math.min(Math.max(propval, minV), maxV);
-					propval = (propval - minV) / (maxV - minV);
-					if (reverse) {
-						propval = 1f - propval;
+			final Color base = baseColor();
+			g.setColor(usesProperty() ? colorFor(n, lookupTable(base), lastRange()) : base);
+			final int sizex = size.getVal();
+			final int sizey = computeSizeY(sizex);
+			drawShape(g, mode, x - sizex / 2, y - sizey / 2, sizex, sizey);
+			g.setColor(toRestore);
+		}
+	}
+
+	/**
+	 * The filter and the property, once the molecule is available.
+	 */
+	@Override
+	public Collection<NodeColumn> getColumns() {
+		updateMolecule();
+		final IMolecule mol = molecule;
+		if (mol == null || !molFilter && !molPropertyFilter) {
+			return Collections.emptyList();
+		}
+		final List<NodeColumn> columns = new ArrayList<>(2);
+		if (molFilter) {
+			columns.add(NodeColumn.contains(mol));
+		}
+		if (molPropertyFilter) {
+			columns.add(NodeColumn.property(incarnation, mol, property));
+		}
+		return columns;
+	}
+
+	/**
+	 * Draws the whole batch in its order, so that overlapping nodes stack as
+	 * if drawn one by one, changing the color of g only when it differs from
+	 * the one of the previous node. Where
+	 * {@link SpriteAtlas#isUsable(Graphics2D) allowed}, each node is a copy of
+	 * a glyph rendered once per color.
+	 */
+	@Override
+	public void apply(final Graphics2D g, final NodeBatch batch) {
+		updateMolecule();
+		final Color toRestore = g.getColor();
+		final Color base = baseColor();
+		final Mode m = mode;
+		final int sizex = size.getVal();
+		final int sizey = computeSizeY(sizex);
+		final int dx = sizex / 2;
+		final int dy = sizey / 2;
+		final boolean stamp = SpriteAtlas.isUsable(g) && sizex + 2 * SPRITE_PADDING < SpriteAtlas.MAX_SIDE && sizey + 2 * SPRITE_PADDING < SpriteAtlas.MAX_SIDE
+				&& isStampable(g, m);
+		final IntPredicate accepted = accepted(batch);
+		if (!usesProperty()) {
+			g.setColor(base);
+			final BufferedImage sprite = stamp ? sprite(g, m, base.getRGB(), sizex, sizey) : null;
+			for (int k = 0; k < batch.size(); k++) {
+				if (accepted.test(k)) {
+					draw(g, sprite, m, (int) batch.getViewX(k) - dx, (int) batch.getViewY(k) - dy, sizex, sizey);
+				}
+			}
+		} else {
+			final ColorLookupTable table = lookupTable(base);
+			final IntToDoubleFunction values = values(batch);
+			final Range range = range(batch);
+			boolean first = true;
+			int current = 0;
+			BufferedImage sprite = null;
+			for (int k = 0; k < batch.size(); k++) {
+				if (accepted.test(k)) {
+					final double value = normalize(values.applyAsDouble(k), range);
+					final int argb = table.getARGB(value);
+					if (first || argb != current) {
+						first = false;
+						current = argb;
+						if (stamp) {
+							/*
+							 * Continuous colors would make a sprite per node:
+							 * they are stamped with fewer levels per channel.
+							 */
+							sprite = sprite(g, m, SpriteAtlas.quantize(argb), sizex, sizey);
+						} else {
+							g.setColor(table.getColor(value));
+						}
 					}
-					newcolor = c.alter(newcolor, (float) propval);
+					draw(g, sprite, m, (int) batch.getViewX(k) - dx, (int) batch.getViewY(k) - dy, sizex, sizey);
 				}
 			}
-			g.setColor(newcolor);
-			final double ks = (scaleFactor.getVal() - MIN_SCALE) * 2 / (double) (SCALE_DIFF);
-			final int sizex = size.getVal();
-			final int startx = x - sizex / 2;
-			final int sizey = (int) Math.ceil(sizex * ks);
-			final int starty = y - sizey / 2;
-			switch (mode) {
-			case FillEllipse:
-				g.fillOval(startx, starty, sizex, sizey);
-				break;
-			case DrawEllipse:
-				g.drawOval(startx, starty, sizex, sizey);
-				break;
-			case DrawRectangle:
-				g.drawRect(startx, starty, sizex, sizey);
-				break;
-			case FillRectangle:
-				g.fillRect(startx, starty, sizex, sizey);
-				break;
-			default:
-				g.fillOval(startx, starty, sizex, sizey);
+		}
+		g.setColor(toRestore);
+	}
+
+	/**
+	 * Only filled shapes are drawn on a canvas: outlines are left to Java2D.
+	 */
+	@Override
+	public boolean rasterize(final PixelCanvas canvas, final NodeBatch batch) {
+		final Mode m = mode;
+		if (m != Mode.FillEllipse && m != Mode.FillRectangle) {
+			return false;
+		}
+		updateMolecule();
+		final Color base = baseColor();
+		final int sizex = size.getVal();
+		final int sizey = computeSizeY(sizex);
+		final int dx = sizex / 2;
+		final int dy = sizey / 2;
+		final ColorLookupTable table = usesProperty() ? lookupTable(base) : null;
+		final IntToDoubleFunction values = table == null ? null : values(batch);
+		final Range range = table == null ? null : range(batch);
+		final IntPredicate accepted = accepted(batch);
+		final int baseARGB = base.getRGB();
+		for (int k = 0; k < batch.size(); k++) {
+			if (accepted.test(k)) {
+				final int argb = table == null ? baseARGB : argbFor(values.applyAsDouble(k), table, range);
+				final int x = (int) batch.getViewX(k) - dx;
+				final int y = (int) batch.getViewY(k) - dy;
+				if (m == Mode.FillEllipse) {
+					canvas.fillEllipse(x, y, sizex, sizey, argb);
+				} else {
+					canvas.fillRect(x, y, sizex, sizey, argb);
+				}
 			}
-			g.setColor(toRestore);
+		}
+		return true;
+	}
+
+	@Override
+	public boolean sampleColors(final NodeBatch batch, final int[] argb) {
+		updateMolecule();
+		final Color base = baseColor();
+		final ColorLookupTable table = usesProperty() ? lookupTable(base) : null;
+		final IntToDoubleFunction values = table == null ? null : values(batch);
+		final Range range = table == null ? null : range(batch);
+		final IntPredicate accepted = accepted(batch);
+		final int baseARGB = base.getRGB();
+		for (int k = 0; k < batch.size(); k++) {
+			if (accepted.test(k)) {
+				argb[k] = table == null ? baseARGB : argbFor(values.applyAsDouble(k), table, range);
+			} else {
+				argb[k] = 0;
+			}
+		}
+		return true;
+	}
+
+	private boolean accepts(final INode<?> n) {
+		return !molFilter || (molecule != null && n.contains(molecule));
+	}
+
+	/*
+	 * The nodes of a batch accepted by the filter, read from the captured
+	 * column where available.
+	 */
+	private IntPredicate accepted(final NodeBatch batch) {
+		final IMolecule mol = molecule;
+		if (!molFilter) {
+			return k -> true;
+		}
+		if (mol == null) {
+			return k -> false;
+		}
+		return batch.getFlags(NodeColumn.contains(mol));
+	}
+
+	/*
+	 * The property of the nodes of a batch, read from the captured column
+	 * where available.
+	 */
+	private IntToDoubleFunction values(final NodeBatch batch) {
+		final IMolecule mol = molecule;
+		if (mol == null) {
+			return k -> Double.NaN;
+		}
+		return batch.getValues(NodeColumn.property(incarnation, mol, property));
+	}
+
+	/*
+	 * The configured color, allocated again only when it changes.
+	 */
+	private Color baseColor() {
+		final Color current = colorCache;
+		if (current.getRed() == red.getVal() && current.getGreen() == green.getVal()
+				&& current.getBlue() == blue.getVal() && current.getAlpha() == alpha.getVal()) {
+			return current;
+		}
+		final Color updated = new Color(red.getVal(), green.getVal(), blue.getVal(), alpha.getVal());
+		colorCache = updated;
+		return updated;
+	}
+
+	/*
+	 * The color of a node, when tuned by a molecule property.
+	 */
+	private Color colorFor(final INode<?> n, final ColorLookupTable table, final Range range) {
+		return table.getColor(normalize(incarnation.getProperty(n, molecule, property), range));
+	}
+
+	private static int argbFor(final double propval, final ColorLookupTable table, final Range range) {
+		return table.getARGB(normalize(propval, range));
+	}
+
+	private static double normalize(final double propval, final Range range) {
+		return range.max > range.min ? (propval - range.min) / (range.max - range.min) : 0;
+	}
+
+	/*
+	 * The range the property is normalized over: either the configured one,
+	 * or the one of the batch values, without outliers and smoothed over the
+	 * snapshots.
+	 */
+	private Range range(final NodeBatch batch) {
+		final IMolecule mol = molecule;
+		if (!autoRange || mol == null) {
+			return new Range(null, null, minPropertyValue(), maxPropertyValue());
+		}
+		final NodeColumn column = NodeColumn.property(incarnation, mol, property);
+		return autoRange(column, batch.getDistribution(column));
+	}
+
+	/*
+	 * Batches drawn from the same snapshot share its distribution: the range
+	 * is computed, and smoothed, once per snapshot.
+	 */
+	private Range autoRange(final NodeColumn column, final ValueDistribution distribution) {
+		final Caches shared = caches();
+		synchronized (shared) {
+			final Range previous = shared.lastRange;
+			if (previous != null && previous.source == distribution) {
+				return previous;
+			}
+			final boolean same = previous != null && column.equals(previous.column);
+			final double cut = percentOf(outliers);
+			double min = distribution.quantile(cut);
+			double max = distribution.quantile(1 - cut);
+			if (Double.isNaN(min) || Double.isNaN(max)) {
+				return same ? previous : new Range(column, distribution, 0, 0);
+			}
+			if (same) {
+				final double keep = percentOf(rangeSmoothing);
+				min += (previous.min - min) * keep;
+				max += (previous.max - max) * keep;
+			}
+			shared.lastRange = new Range(column, distribution, min, max);
+			return shared.lastRange;
+		}
+	}
+
+	/*
+	 * Single nodes are not part of any snapshot: they use the last automatic
+	 * range, if any.
+	 */
+	private Range lastRange() {
+		final Caches shared = caches();
+		synchronized (shared) {
+			if (autoRange && shared.lastRange != null) {
+				return shared.lastRange;
+			}
+		}
+		return new Range(null, null, minPropertyValue(), maxPropertyValue());
+	}
+
+	private static double percentOf(final RangedInteger value) {
+		return value == null ? 0 : value.getVal() / PERCENT;
+	}
+
+	/*
+	 * The table mapping the normalized property to colors, built again only
+	 * when the color, the channel, the colormap or the direction change.
+	 */
+	private ColorLookupTable lookupTable(final Color base) {
+		final Colormap map = colormap == null ? Colormap.Channel : colormap;
+		final Caches shared = caches();
+		final Palette current = shared.palette;
+		if (current != null && current.matches(base, c, map, reverse)) {
+			return current.table;
+		}
+		final Palette updated = new Palette(base, c, map, reverse);
+		shared.palette = updated;
+		return updated.table;
+	}
+
+	private int computeSizeY(final int sizex) {
+		final double ks = (scaleFactor.getVal() - MIN_SCALE) * 2 / (double) (SCALE_DIFF);
+		return (int) Math.ceil(sizex * ks);
+	}
+
+	/*
+	 * Without antialiasing, Java2D traces ellipses differently depending on
+	 * where they are and on the clip: a sprite would not match them.
+	 */
+	private static boolean isStampable(final Graphics2D g, final Mode m) {
+		return m == Mode.DrawRectangle || m == Mode.FillRectangle
+				|| RenderingHints.VALUE_ANTIALIAS_ON.equals(g.getRenderingHint(RenderingHints.KEY_ANTIALIASING));
+	}
+
+	private static void draw(final Graphics2D g, final BufferedImage sprite, final Mode m, final int startx, final int starty, final int sizex, final int sizey) {
+		if (sprite == null) {
+			drawShape(g, m, startx, starty, sizex, sizey);
+		} else {
+			g.drawImage(sprite, startx - SPRITE_PADDING, starty - SPRITE_PADDING, null);
+		}
+	}
+
+	private static void drawShape(final Graphics2D g, final Mode m, final int startx, final int starty, final int sizex, final int sizey) {
+		switch (m) {
+		case FillEllipse:
+			g.fillOval(startx, starty, sizex, sizey);
+			break;
+		case DrawEllipse:
+			g.drawOval(startx, starty, sizex, sizey);
+			break;
+		case DrawRectangle:
+			g.drawRect(startx, starty, sizex, sizey);
+			break;
+		case FillRectangle:
+			g.fillRect(startx, starty, sizex, sizey);
+			break;
+		default:
+			g.fillOval(startx, starty, sizex, sizey);
+		}
+	}
+
+	private int maxPropertyValue() {
+		return (int) (maxprop.getVal() * FastMath.pow(PROPERTY_SCALE, propoom.getVal()));
+	}
+
+	private int minPropertyValue() {
+		return (int) (minprop.getVal() * FastMath.pow(PROPERTY_SCALE, propoom.getVal()));
+	}
+
+	/*
+	 * The sprite of a glyph, as it would be drawn on g at integer coordinates
+	 * with exactly the given color.
+	 */
+	private BufferedImage sprite(final Graphics2D g, final Mode m, final int color, final int sizex, final int sizey) {
+		final Object antialiasing = g.getRenderingHint(RenderingHints.KEY_ANTIALIASING);
+		final boolean aa = RenderingHints.VALUE_ANTIALIAS_ON.equals(antialiasing);
+		final long key = (long) color << Integer.SIZE
+				| m.ordinal() << MODE_SHIFT
+				| (aa ? 1 : 0) << ANTIALIAS_SHIFT
+				| sizex << SIZE_X_SHIFT
+				| sizey;
+		return caches().sprites.get(key, sizex + 2 * SPRITE_PADDING + 1, sizey + 2 * SPRITE_PADDING + 1, sg -> {
+			sg.setRenderingHint(RenderingHints.KEY_ANTIALIASING, aa ? RenderingHints.VALUE_ANTIALIAS_ON : RenderingHints.VALUE_ANTIALIAS_OFF);
+			sg.setColor(new Color(color, true));
+			drawShape(sg, m, SPRITE_PADDING, SPRITE_PADDING, sizex, sizey);
+		});
+	}
+
+	private synchronized Caches caches() {
+		if (caches == null) {
+			caches = new Caches();
+		}
+		return caches;
+	}
+
+	/*
+	 * Never waits for the molecule to be built: until it is, the molecule
+	 * filter accepts no node, and colors are not tuned by the property.
+	 */
+	private synchronized void updateMolecule() {
+		final boolean changed = !HashUtils.pointerEquals(molString, molStringCached) || !incarnation.equals(prevIncarnation);
+		if (moleculeLookup == null || changed) {
+			molStringCached = molString;
+			prevIncarnation = incarnation;
+			moleculeLookup = MoleculeResolver.resolve(incarnation, molString);
+			molecule = null;
+			notifyWhenResolved(updateListener);
+		}
+		if (molecule == null) {
+			molecule = moleculeLookup.getNow(null);
+		}
+	}
+
+	private void notifyWhenResolved(final Runnable listener) {
+		if (listener != null && !moleculeLookup.isDone()) {
+			moleculeLookup.thenRun(listener);
+		}
+	}
+
+	/**
+	 * The listener is notified when a molecule that was being built is
+	 * ready, so that paused displays draw it.
+	 */
+	@Override
+	public synchronized void setUpdateListener(final Runnable listener) {
+		updateMolecule();
+		updateListener = listener;
+		notifyWhenResolved(listener);
+	}
+
+	private boolean usesProperty() {
+		return molPropertyFilter && molecule != null && (autoRange || minPropertyValue() < maxPropertyValue());
+	}
+
+	/**
+	 * A copy of the current configuration, sharing the sprites, the lookup
+	 * tables and the automatic range of this effect. Subclasses are not
+	 * copied: they are drawn as they are, unless they override this method
+	 * too.
+	 */
+	@Override
+	public Effect snapshot() {
+		if (getClass() != DrawShape.class) {
+			return this;
+		}
+		updateMolecule();
+		final DrawShape copy = new DrawShape();
+		copy.incarnation = incarnation;
+		copy.mode = mode;
+		copy.red = red;
+		copy.blue = blue;
+		copy.green = green;
+		copy.alpha = alpha;
+		copy.scaleFactor = scaleFactor;
+		copy.size = size;
+		copy.molFilter = molFilter;
+		copy.molString = molString;
+		copy.molPropertyFilter = molPropertyFilter;
+		copy.property = property;
+		copy.c = c;
+		copy.reverse = reverse;
+		copy.colormap = colormap;
+		copy.propoom = propoom;
+		copy.minprop = minprop;
+		copy.maxprop = maxprop;
+		copy.autoRange = autoRange;
+		copy.outliers = outliers;
+		copy.rangeSmoothing = rangeSmoothing;
+		copy.colorCache = baseColor();
+		synchronized (this) {
+			copy.molecule = molecule;
+			copy.moleculeLookup = moleculeLookup;
+			copy.molStringCached = molStringCached;
+			copy.prevIncarnation = prevIncarnation;
+		}
+		copy.caches = caches();
+		return copy;
+	}
+
+	/**
+	 * The batch apply only reads the configuration, and the molecule is
+	 * looked up under a lock: batches can be drawn in parallel. The base
+	 * color of a {@link #snapshot()} is computed when it is taken, before
+	 * any batch is drawn, so the tiles never update it.
+	 * 
+	 * @return true
+	 */
+	@Override
+	public boolean supportsParallelBatches() {
+		return true;
+	}
+
+	/**
+	 * Half the larger side of the shape, the padding of its sprite, and the
+	 * pixel lost truncating the view position.
+	 */
+	@Override
+	public int getViewExtent() {
+		final int sizex = size.getVal();
+		return (Math.max(sizex, computeSizeY(sizex)) + 1) / 2 + SPRITE_PADDING + 1;
+	}
+
+	/**
+	 * A normalization range, and the column and distribution it was computed
+	 * from, if automatic.
+	 */
+	private static final class Range {
+		private final NodeColumn column;
+		private final ValueDistribution source;
+		private final double min, max;
+
+		private Range(final NodeColumn col, final ValueDistribution distribution, final double lo, final double hi) {
+			column = col;
+			source = distribution;
+			min = lo;
+			max = hi;
+		}
+	}
+
+	/**
+	 * What an effect learns while drawing, shared with its snapshots.
+	 */
+	private static final class Caches {
+		private final SpriteAtlas sprites = new SpriteAtlas();
+		private volatile Palette palette;
+		/*
+		 * Guarded by the instance.
+		 */
+		private Range lastRange;
+	}
+
+	/**
+	 * A lookup table, and the parameters it was built with.
+	 */
+	private static final class Palette {
+		private final int argb;
+		private final ColorChannel channel;
+		private final Colormap map;
+		private final boolean reversed;
+		private final ColorLookupTable table;
+
+		private Palette(final Color base, final ColorChannel ch, final Colormap cm, final boolean rev) {
+			argb = base.getRGB();
+			channel = ch;
+			map = cm;
+			reversed = rev;
+			table = cm.lookupTable(base, ch, rev, ColorLookupTable.DEFAULT_SIZE);
+		}
+
+		private boolean matches(final Color base, final ColorChannel ch, final Colormap cm, final boolean rev) {
+			return argb == base.getRGB() && channel == ch && map == cm && reversed == rev;
 		}
 	}
 
@@ -191,6 +680,13 @@ public class DrawShape implements Effect {
 		return colorCache;
 	}
 
+	/**
+	 * @return the colormap
+	 */
+	protected Colormap getColormap() {
+		return colormap;
+	}
+
 	/**
 	 * @return Green
 	 */
@@ -240,6 +736,14 @@ public class DrawShape implements Effect {
 		return molString;
 	}
 
+	/**
+	 * @return the percentage of outliers excluded from the automatic range,
+	 *         at each end
+	 */
+	protected RangedInteger getOutliers() {
+		return outliers;
+	}
+
 	/**
 	 * @return property
 	 */
@@ -254,6 +758,14 @@ public class DrawShape implements Effect {
 		return propoom;
 	}
 
+	/**
+	 * @return the weight, as a percentage, of the previous automatic range
+	 *         when computing a new one
+	 */
+	protected RangedInteger getRangeSmoothing() {
+		return rangeSmoothing;
+	}
+
 	/**
 	 * @return red
 	 */
@@ -275,6 +787,13 @@ public class DrawShape implements Effect {
 		return size;
 	}
 
+	/**
+	 * @return true if the property range is computed automatically
+	 */
+	protected boolean isAutoRange() {
+		return autoRange;
+	}
+
 	/**
 	 * @return molFilter
 	 */
@@ -303,6 +822,15 @@ public class DrawShape implements Effect {
 		this.alpha = a;
 	}
 
+	/**
+	 * @param auto
+	 *            true to compute the property range automatically, from the
+	 *            values of all the nodes
+	 */
+	protected void setAutoRange(final boolean auto) {
+		this.autoRange = auto;
+	}
+
 	/**
 	 * @param b blue
 	 */
@@ -317,6 +845,13 @@ public class DrawShape implements Effect {
 		this.c = colorChannel;
 	}
 	
+	/**
+	 * @param cm colormap
+	 */
+	protected void setColormap(final Colormap cm) {
+		this.colormap = cm;
+	}
+
 	/**
 	 * @param g green
 	 */
@@ -371,6 +906,15 @@ public class DrawShape implements Effect {
 		this.molString = mols;
 	}
 
+	/**
+	 * @param out
+	 *            the percentage of outliers excluded from the automatic
+	 *            range, at each end
+	 */
+	protected void setOutliers(final RangedInteger out) {
+		this.outliers = out;
+	}
+
 	/**
 	 * @param pr property
 	 */
@@ -385,6 +929,15 @@ public class DrawShape implements Effect {
 		this.propoom = oom;
 	}
 	
+	/**
+	 * @param smoothing
+	 *            the weight, as a percentage, of the previous automatic range
+	 *            when computing a new one
+	 */
+	protected void setRangeSmoothing(final RangedInteger smoothing) {
+		this.rangeSmoothing = smoothing;
+	}
+
 	/**
 	 * @param r red
 	 */
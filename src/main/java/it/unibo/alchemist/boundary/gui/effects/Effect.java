@@ -13,6 +13,8 @@ import it.unibo.alchemist.model.interfaces.INode;
 import java.awt.Color;
 import java.awt.Graphics2D;
 import java.io.Serializable;
+import java.util.Collection;
+import java.util.Collections;
 
 /**
  * @author Danilo Pianini
@@ -34,9 +36,110 @@ public interface Effect extends Serializable {
 	 */
 	void apply(Graphics2D g, INode<?> n, int x, int y);
 
+	/**
+	 * Applies the effect to many nodes at once. Implementations should
+	 * override it to minimize the changes of the graphics state, e.g. by
+	 * grouping nodes drawn with the same color. By default, it calls
+	 * {@link #apply(Graphics2D, INode, int, int)} for each node.
+	 * 
+	 * @param g
+	 *            Graphics2D to use
+	 * @param batch
+	 *            the nodes to draw
+	 */
+	default void apply(final Graphics2D g, final NodeBatch batch) {
+		for (int k = 0; k < batch.size(); k++) {
+			apply(g, batch.getNode(k), (int) batch.getViewX(k), (int) batch.getViewY(k));
+		}
+	}
+
+	/**
+	 * Draws the effect straight on the pixels of the destination. Used for
+	 * batches so large that even one {@link Graphics2D} call per node is too
+	 * slow.
+	 * 
+	 * @param canvas
+	 *            the pixels to draw on
+	 * @param batch
+	 *            the nodes to draw
+	 * @return true if the batch has been drawn, false if this effect, as
+	 *         currently configured, cannot draw on a canvas: then
+	 *         {@link #apply(Graphics2D, NodeBatch)} is used. False by default
+	 */
+	default boolean rasterize(final PixelCanvas canvas, final NodeBatch batch) {
+		return false;
+	}
+
+	/**
+	 * Computes the color each node of a batch would be drawn with. Used to
+	 * summarize nodes too dense to be drawn one by one.
+	 * 
+	 * @param batch
+	 *            the nodes
+	 * @param argb
+	 *            where to write the colors, in non premultiplied ARGB form,
+	 *            by position in the batch. Nodes not drawn get 0
+	 * @return true if the colors have been written, false if this effect
+	 *         cannot be summarized by a color: then it is applied to a
+	 *         sample of the nodes. False by default
+	 */
+	default boolean sampleColors(final NodeBatch batch, final int[] argb) {
+		return false;
+	}
+
+	/**
+	 * @return the values this effect reads from the nodes of a batch, to be
+	 *         captured with the node positions. Called by the simulation
+	 *         thread before each snapshot. None by default
+	 */
+	default Collection<NodeColumn> getColumns() {
+		return Collections.emptyList();
+	}
+
+	/**
+	 * Copies the current configuration of this effect, so that a frame can be
+	 * drawn with it on another thread while the effect keeps being edited.
+	 * Called on the thread editing the effect. Effects whose configuration
+	 * can change must override it: by default, the effect itself is
+	 * returned.
+	 * 
+	 * @return an effect drawing as this one does now, never changed later
+	 */
+	default Effect snapshot() {
+		return this;
+	}
+
+	/**
+	 * @param listener
+	 *            called, on any thread, when this effect would draw
+	 *            differently without having been edited, e.g. when a
+	 *            resource it was waiting for becomes available. Ignored by
+	 *            default
+	 */
+	default void setUpdateListener(final Runnable listener) {
+	}
+
 	/**
 	 * @return a color which resembles the color of this effect
 	 */
 	Color getColorSummary();
 
+	/**
+	 * @return true if {@link #apply(Graphics2D, NodeBatch)} can be called
+	 *         concurrently by many threads, each one with its own
+	 *         {@link Graphics2D} and batch. False by default
+	 */
+	default boolean supportsParallelBatches() {
+		return false;
+	}
+
+	/**
+	 * @return the distance (in pixels) from the view position of a node
+	 *         within which everything this effect draws for it is
+	 *         contained, or a negative number if unknown. Unknown by default
+	 */
+	default int getViewExtent() {
+		return -1;
+	}
+
 }
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2010-2015, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.gui.effects;
+
+import it.unibo.alchemist.SupportedIncarnations;
+import it.unibo.alchemist.model.interfaces.IMolecule;
+import it.unibo.alchemist.utils.L;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Builds the molecules named in the effects, shared by all of them. Molecules
+ * are built once per incarnation and name, on background threads, so that
+ * the painting code never waits for an incarnation to parse a name: until a
+ * molecule is ready, it is simply not available. Each name is built on its
+ * own thread, so that a name taking long to parse does not delay the
+ * others.
+ * 
+ * The most recently used molecules are kept, up to {@link #CAPACITY}. Names
+ * that cannot be parsed are reported and dropped, so that a later lookup
+ * tries again: callers should keep the lookup they got, and ask again only
+ * when the name changes.
+ */
+final class MoleculeResolver {
+
+	/**
+	 * Maximum number of molecules kept.
+	 */
+	static final int CAPACITY = 1024;
+	private static final float LOAD_FACTOR = 0.75f;
+	private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(r -> {
+		final Thread t = new Thread(r, "Molecule resolver");
+		t.setDaemon(true);
+		return t;
+	});
+	private static final Map<Key, CompletableFuture<IMolecule>> CACHE = new LinkedHashMap<Key, CompletableFuture<IMolecule>>(CAPACITY, LOAD_FACTOR, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<Key, CompletableFuture<IMolecule>> eldest) {
+			return size() > CAPACITY;
+		}
+	};
+	private static final CompletableFuture<IMolecule> NONE = CompletableFuture.completedFuture(null);
+
+	private MoleculeResolver() {
+	}
+
+	/**
+	 * @param incarnation
+	 *            the incarnation
+	 * @param name
+	 *            the molecule name
+	 * @return the molecule, completed with null if it cannot be built.
+	 *         Dependent actions run on a resolver thread, or on the calling
+	 *         one if the molecule was already built
+	 */
+	static CompletableFuture<IMolecule> resolve(final SupportedIncarnations incarnation, final String name) {
+		if (incarnation == null || name == null) {
+			return NONE;
+		}
+		final Key key = new Key(incarnation, name);
+		final CompletableFuture<IMolecule> molecule;
+		synchronized (CACHE) {
+			final CompletableFuture<IMolecule> cached = CACHE.get(key);
+			if (cached != null) {
+				return cached;
+			}
+			molecule = CompletableFuture.supplyAsync(() -> incarnation.createMolecule(name), EXECUTOR)
+					.exceptionally(e -> {
+						L.warn("Cannot build molecule \"" + name + "\" with the " + incarnation + " incarnation.");
+						L.error(e);
+						return null;
+					});
+			CACHE.put(key, molecule);
+		}
+		molecule.thenAccept(m -> {
+			if (m == null) {
+				synchronized (CACHE) {
+					CACHE.remove(key, molecule);
+				}
+			}
+		});
+		return molecule;
+	}
+
+	private static final class Key {
+		private final SupportedIncarnations incarnation;
+		private final String name;
+
+		private Key(final SupportedIncarnations inc, final String n) {
+			incarnation = inc;
+			name = n;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (obj instanceof Key) {
+				final Key k = (Key) obj;
+				return incarnation == k.incarnation && name.equals(k.name);
+			}
+			return false;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(incarnation, name);
+		}
+	}
+
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2010-2015, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.gui.effects;
+
+import it.unibo.alchemist.model.interfaces.INode;
+
+import java.util.function.IntPredicate;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * The nodes to be drawn in a frame, with their screen positions. A batch is
+ * only valid for the duration of the {@link Effect#apply(java.awt.Graphics2D, NodeBatch)}
+ * call it is passed to.
+ */
+public interface NodeBatch {
+
+	/**
+	 * @param k
+	 *            the position in the batch
+	 * @return the node
+	 */
+	INode<?> getNode(int k);
+
+	/**
+	 * @param k
+	 *            the position in the batch
+	 * @return the index of the node in the snapshot it was taken from
+	 */
+	int getSnapshotIndex(int k);
+
+	/**
+	 * @param k
+	 *            the position in the batch
+	 * @return x screen position
+	 */
+	double getViewX(int k);
+
+	/**
+	 * @param k
+	 *            the position in the batch
+	 * @return y screen position
+	 */
+	double getViewY(int k);
+
+	/**
+	 * @return the number of nodes in the batch
+	 */
+	int size();
+
+	/**
+	 * @param column
+	 *            a column
+	 * @return true if the values of the column were captured with the
+	 *         positions, and are read without touching the live nodes. Only
+	 *         then can they be read from threads other than the one drawing
+	 */
+	default boolean isCaptured(final NodeColumn column) {
+		return false;
+	}
+
+	/**
+	 * @param column
+	 *            a flag column
+	 * @return the flags of the nodes, by position in the batch. By default,
+	 *         they are computed on the live nodes: batches built from
+	 *         snapshots read the captured values instead
+	 */
+	default IntPredicate getFlags(final NodeColumn column) {
+		return k -> column.test(getNode(k));
+	}
+
+	/**
+	 * @param column
+	 *            a numeric column
+	 * @return the values of the nodes, by position in the batch. By default,
+	 *         they are computed on the live nodes: batches built from
+	 *         snapshots read the captured values instead
+	 */
+	default IntToDoubleFunction getValues(final NodeColumn column) {
+		return k -> column.evaluate(getNode(k));
+	}
+
+	/**
+	 * @param column
+	 *            a numeric column
+	 * @return the distribution of the values. By default, it is computed on
+	 *         the nodes of the batch: batches built from snapshots return the
+	 *         distribution over the whole environment, computed when the
+	 *         snapshot was captured
+	 */
+	default ValueDistribution getDistribution(final NodeColumn column) {
+		return ValueDistribution.of(getValues(column), size(), false);
+	}
+
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2010-2015, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.gui.effects;
+
+import it.unibo.alchemist.SupportedIncarnations;
+import it.unibo.alchemist.model.interfaces.IMolecule;
+import it.unibo.alchemist.model.interfaces.INode;
+
+import java.util.Objects;
+
+/**
+ * A value an effect needs for every node it draws. Effects declare their
+ * columns through {@link Effect#getColumns()}: displays capture them on the
+ * simulation thread together with the node positions, so that painting reads
+ * arrays instead of querying live nodes.
+ * 
+ * A column is either a flag (whether a node contains a molecule) or a number
+ * (a property of a molecule in a node). Equal columns requested by different
+ * effects are captured once.
+ */
+public final class NodeColumn {
+
+	private final SupportedIncarnations incarnation;
+	private final IMolecule molecule;
+	private final String property;
+
+	private NodeColumn(final SupportedIncarnations inc, final IMolecule mol, final String prop) {
+		incarnation = inc;
+		molecule = Objects.requireNonNull(mol);
+		property = prop;
+	}
+
+	/**
+	 * @param molecule
+	 *            the molecule
+	 * @return a flag column, set for the nodes containing the molecule
+	 */
+	public static NodeColumn contains(final IMolecule molecule) {
+		return new NodeColumn(null, molecule, null);
+	}
+
+	/**
+	 * @param incarnation
+	 *            the incarnation computing the property
+	 * @param molecule
+	 *            the molecule
+	 * @param property
+	 *            the property
+	 * @return a numeric column, with the value of the property of the
+	 *         molecule in each node
+	 */
+	public static NodeColumn property(final SupportedIncarnations incarnation, final IMolecule molecule, final String property) {
+		return new NodeColumn(Objects.requireNonNull(incarnation), molecule, Objects.requireNonNull(property));
+	}
+
+	/**
+	 * @return true if this is a flag column, false if it is numeric
+	 */
+	public boolean isFlag() {
+		return incarnation == null;
+	}
+
+	/**
+	 * Computes the flag of a live node.
+	 * 
+	 * @param node
+	 *            the node
+	 * @return true if the node contains the molecule
+	 */
+	public boolean test(final INode<?> node) {
+		return node.contains(molecule);
+	}
+
+	/**
+	 * Computes the value of a live node.
+	 * 
+	 * @param node
+	 *            the node
+	 * @return the property of the molecule in the node
+	 */
+	public double evaluate(final INode<?> node) {
+		return incarnation.getProperty(node, molecule, property);
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (obj instanceof NodeColumn) {
+			final NodeColumn other = (NodeColumn) obj;
+			return incarnation == other.incarnation && molecule.equals(other.molecule) && Objects.equals(property, other.property);
+		}
+		return false;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(incarnation, molecule, property);
+	}
+
+	@Override
+	public String toString() {
+		return isFlag() ? "contains " + molecule : incarnation + " " + property + " of " + molecule;
+	}
+
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright (C) 2010-2015, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.gui.effects;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferInt;
+
+/**
+ * Direct access to the pixels of an opaque, integer RGB image, for effects
+ * that draw so many nodes that even one {@link java.awt.Graphics2D} call per
+ * node is too slow. Shapes are not antialiased, and colors are blended with
+ * the image in the drawing loop.
+ * 
+ * Obtaining the pixels of an image makes Java2D stop caching it in video
+ * memory, so a canvas should be built on images that are drawn once per
+ * frame, such as offscreen frames.
+ */
+public final class PixelCanvas {
+
+	private static final int CHANNEL_MASK = 0xFF;
+	private static final int OPAQUE = 0xFF;
+	private static final int RED_SHIFT = 16;
+	private static final int GREEN_SHIFT = 8;
+	private static final int ALPHA_SHIFT = 24;
+	private static final int RGB_MASK = 0xFFFFFF;
+	/*
+	 * x * 0x010101 >>> 24 is x / 255 for any product of two bytes.
+	 */
+	private static final int DIVIDE_BY_255 = 0x010101;
+	private static final int DIVISION_SHIFT = 24;
+	private static final int ROUNDING = 0x800000;
+	private static final double PIXEL_CENTER = 0.5;
+
+	private final int[] pixels;
+	private final int width, height;
+	private int[] spans = new int[0];
+	private int spansWidth, spansHeight;
+
+	private PixelCanvas(final int[] data, final int w, final int h) {
+		pixels = data;
+		width = w;
+		height = h;
+	}
+
+	/**
+	 * @param image
+	 *            the image to draw on
+	 * @return a canvas over the image pixels, or null if the image is not of
+	 *         type {@link BufferedImage#TYPE_INT_RGB}
+	 */
+	public static PixelCanvas of(final BufferedImage image) {
+		if (image == null || image.getType() != BufferedImage.TYPE_INT_RGB) {
+			return null;
+		}
+		final DataBuffer buffer = image.getRaster().getDataBuffer();
+		if (!(buffer instanceof DataBufferInt) || buffer.getNumBanks() != 1) {
+			return null;
+		}
+		return new PixelCanvas(((DataBufferInt) buffer).getData(), image.getWidth(), image.getHeight());
+	}
+
+	/**
+	 * @return the canvas width
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * @return the canvas height
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Blends a color on a pixel. Pixels outside the canvas are ignored.
+	 * 
+	 * @param x
+	 *            the x coordinate
+	 * @param y
+	 *            the y coordinate
+	 * @param argb
+	 *            the color, in non premultiplied ARGB form
+	 */
+	public void blendPixel(final int x, final int y, final int argb) {
+		if (x >= 0 && x < width && y >= 0 && y < height) {
+			final int i = y * width + x;
+			pixels[i] = blend(pixels[i], argb);
+		}
+	}
+
+	/**
+	 * Fills an axis aligned rectangle, covering the same pixels as
+	 * {@link java.awt.Graphics#fillRect(int, int, int, int)}.
+	 * 
+	 * @param x
+	 *            the left coordinate
+	 * @param y
+	 *            the top coordinate
+	 * @param w
+	 *            the width
+	 * @param h
+	 *            the height
+	 * @param argb
+	 *            the color, in non premultiplied ARGB form
+	 */
+	public void fillRect(final int x, final int y, final int w, final int h, final int argb) {
+		final int x0 = Math.max(0, x);
+		final int x1 = Math.min(width, x + w);
+		final int y0 = Math.max(0, y);
+		final int y1 = Math.min(height, y + h);
+		for (int row = y0; row < y1; row++) {
+			fillSpan(row, x0, x1, argb);
+		}
+	}
+
+	/**
+	 * Fills the ellipse inscribed in a rectangle: a pixel is covered if its
+	 * center is inside the ellipse. Ellipses one pixel thin are filled as
+	 * rectangles.
+	 * 
+	 * @param x
+	 *            the left coordinate of the bounding rectangle
+	 * @param y
+	 *            the top coordinate of the bounding rectangle
+	 * @param w
+	 *            the width of the bounding rectangle
+	 * @param h
+	 *            the height of the bounding rectangle
+	 * @param argb
+	 *            the color, in non premultiplied ARGB form
+	 */
+	public void fillEllipse(final int x, final int y, final int w, final int h, final int argb) {
+		if (w <= 1 || h <= 1) {
+			fillRect(x, y, Math.max(1, w), Math.max(1, h), argb);
+			return;
+		}
+		if (w != spansWidth || h != spansHeight) {
+			computeSpans(w, h);
+		}
+		final int y0 = Math.max(0, y);
+		final int y1 = Math.min(height, y + h);
+		for (int row = y0; row < y1; row++) {
+			final int r = 2 * (row - y);
+			fillSpan(row, Math.max(0, x + spans[r]), Math.min(width, x + spans[r + 1]), argb);
+		}
+	}
+
+	/*
+	 * Nodes of a batch usually share their size: the spans of each row,
+	 * relative to the bounding rectangle, are computed once per size.
+	 */
+	private void computeSpans(final int w, final int h) {
+		if (spans.length < 2 * h) {
+			spans = new int[2 * h];
+		}
+		final double rx = w / 2d;
+		final double ry = h / 2d;
+		for (int row = 0; row < h; row++) {
+			final double dy = (row + PIXEL_CENTER - ry) / ry;
+			final double reach = 1 - dy * dy;
+			if (reach > 0) {
+				final double half = rx * Math.sqrt(reach);
+				/*
+				 * Pixels whose center is within [rx - half, rx + half].
+				 */
+				spans[2 * row] = (int) Math.ceil(rx - half - PIXEL_CENTER);
+				spans[2 * row + 1] = (int) Math.floor(rx + half - PIXEL_CENTER) + 1;
+			} else {
+				spans[2 * row] = 0;
+				spans[2 * row + 1] = 0;
+			}
+		}
+		spansWidth = w;
+		spansHeight = h;
+	}
+
+	private void fillSpan(final int row, final int from, final int to, final int argb) {
+		final int alpha = argb >>> ALPHA_SHIFT;
+		if (alpha == 0 || from >= to) {
+			return;
+		}
+		final int base = row * width;
+		if (alpha == OPAQUE) {
+			final int color = argb & RGB_MASK;
+			for (int i = base + from; i < base + to; i++) {
+				pixels[i] = color;
+			}
+		} else {
+			for (int i = base + from; i < base + to; i++) {
+				pixels[i] = blend(pixels[i], argb);
+			}
+		}
+	}
+
+	private static int blend(final int dst, final int src) {
+		final int a = src >>> ALPHA_SHIFT;
+		final int na = OPAQUE - a;
+		final int r = mul8(a, (src >> RED_SHIFT) & CHANNEL_MASK) + mul8(na, (dst >> RED_SHIFT) & CHANNEL_MASK);
+		final int g = mul8(a, (src >> GREEN_SHIFT) & CHANNEL_MASK) + mul8(na, (dst >> GREEN_SHIFT) & CHANNEL_MASK);
+		final int b = mul8(a, src & CHANNEL_MASK) + mul8(na, dst & CHANNEL_MASK);
+		return r << RED_SHIFT | g << GREEN_SHIFT | b;
+	}
+
+	/*
+	 * a * b / 255, rounded, without divisions. Java2D rounds each product
+	 * this way when it blends translucent colors on opaque images, so the
+	 * pixels match those it would draw.
+	 */
+	private static int mul8(final int a, final int b) {
+		return (a * b * DIVIDE_BY_255 + ROUNDING) >>> DIVISION_SHIFT;
+	}
+
+}
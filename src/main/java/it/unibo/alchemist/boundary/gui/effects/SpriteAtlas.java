@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2010-2015, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.gui.effects;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+
+/**
+ * A bounded cache of small pre-rendered images, that effects can
+ * stamp with {@link Graphics2D#drawImage(java.awt.Image, int, int,
+ * java.awt.image.ImageObserver)} instead of rasterizing the same glyph for
+ * every node. Glyphs are identified by a key chosen by the effect, which
+ * must encode everything the glyph depends on: when the parameters of an
+ * effect change, the old glyphs are simply no longer used, and get evicted.
+ * 
+ * Stamping images is only worth on raster destinations with no scaling, and
+ * would turn vector outputs into bitmaps: effects should use sprites only
+ * where {@link #isUsable(Graphics2D)}.
+ * 
+ * An atlas can be shared by threads drawing in parallel: sprites are looked
+ * up without locking, and only building a missing sprite may wait for
+ * another thread. When full, the atlas evicts sprites not used since the
+ * previous eviction first, approximating a least recently used policy.
+ */
+public final class SpriteAtlas {
+
+	/**
+	 * Rendering hint telling effects whether they may stamp sprites on the
+	 * destination. Displays set it to {@link #VALUE_SPRITES_ON} on raster
+	 * destinations only.
+	 */
+	public static final RenderingHints.Key KEY_SPRITES = new RenderingHints.Key(0) {
+		@Override
+		public boolean isCompatibleValue(final Object val) {
+			return VALUE_SPRITES_ON.equals(val) || VALUE_SPRITES_OFF.equals(val);
+		}
+	};
+	/**
+	 * Sprites can be used.
+	 */
+	public static final Object VALUE_SPRITES_ON = Boolean.TRUE;
+	/**
+	 * Sprites must not be used.
+	 */
+	public static final Object VALUE_SPRITES_OFF = Boolean.FALSE;
+	/**
+	 * Default number of sprites kept.
+	 */
+	public static final int DEFAULT_CAPACITY = 256;
+	/**
+	 * Maximum side (in pixels) of a sprite: larger glyphs are cheaper to draw
+	 * directly than to keep in memory.
+	 */
+	public static final int MAX_SIDE = 128;
+	/*
+	 * Bits dropped from each color channel, so that glyphs tinted by a
+	 * continuous property do not fill the cache with nearly equal sprites.
+	 */
+	private static final int QUANTIZATION_BITS = 2;
+	private static final int CHANNEL_BITS = 8;
+	private static final int CHANNELS = 4;
+	private static final int CHANNEL_MASK = 0xFF;
+
+	private final ConcurrentMap<Long, Sprite> sprites = new ConcurrentHashMap<>();
+	private final int capacity;
+
+	/**
+	 * Builds an atlas of {@link #DEFAULT_CAPACITY} sprites.
+	 */
+	public SpriteAtlas() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param capacity
+	 *            the maximum number of sprites kept
+	 */
+	public SpriteAtlas(final int capacity) {
+		this.capacity = capacity;
+	}
+
+	/**
+	 * @param g
+	 *            the destination
+	 * @return true if the destination allows sprites, and it is not scaled
+	 *         nor rotated
+	 */
+	public static boolean isUsable(final Graphics2D g) {
+		return VALUE_SPRITES_ON.equals(g.getRenderingHint(KEY_SPRITES))
+				&& (g.getTransform().getType() & ~AffineTransform.TYPE_TRANSLATION) == 0;
+	}
+
+	/**
+	 * @param argb
+	 *            a color, in ARGB form
+	 * @return the color with fewer levels per channel, spread over the whole
+	 *         range
+	 */
+	public static int quantize(final int argb) {
+		int res = 0;
+		for (int shift = 0; shift < CHANNELS * CHANNEL_BITS; shift += CHANNEL_BITS) {
+			final int channel = (argb >>> shift) & CHANNEL_MASK;
+			final int high = channel >>> QUANTIZATION_BITS << QUANTIZATION_BITS;
+			res |= (high | high >>> (CHANNEL_BITS - QUANTIZATION_BITS)) << shift;
+		}
+		return res;
+	}
+
+	/**
+	 * @param key
+	 *            identifies the glyph
+	 * @param width
+	 *            the sprite width, used if the sprite is built
+	 * @param height
+	 *            the sprite height, used if the sprite is built
+	 * @param glyph
+	 *            draws the glyph on a new, transparent sprite
+	 * @return the sprite
+	 */
+	public BufferedImage get(final long key, final int width, final int height, final Consumer<Graphics2D> glyph) {
+		final Sprite cached = sprites.get(key);
+		if (cached != null) {
+			/*
+			 * Read before writing: sprites stamped by many threads do not
+			 * bounce the flag between their caches.
+			 */
+			if (!cached.used) {
+				cached.used = true;
+			}
+			return cached.image;
+		}
+		final BufferedImage image = new BufferedImage(Math.max(1, width), Math.max(1, height), BufferedImage.TYPE_INT_ARGB_PRE);
+		final Graphics2D g = image.createGraphics();
+		try {
+			glyph.accept(g);
+		} finally {
+			g.dispose();
+		}
+		final Sprite built = new Sprite(image);
+		final Sprite previous = sprites.putIfAbsent(key, built);
+		if (previous != null) {
+			return previous.image;
+		}
+		if (sprites.size() > capacity) {
+			evict();
+		}
+		return image;
+	}
+
+	/*
+	 * Second chance: sprites used since the last sweep are spared once. If
+	 * other threads keep using all of them, a second sweep drops any.
+	 */
+	private synchronized void evict() {
+		for (int sweep = 0; sweep < 2 && sprites.size() > capacity; sweep++) {
+			final Iterator<Sprite> it = sprites.values().iterator();
+			while (it.hasNext() && sprites.size() > capacity) {
+				final Sprite sprite = it.next();
+				if (sprite.used && sweep == 0) {
+					sprite.used = false;
+				} else {
+					it.remove();
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the number of sprites kept
+	 */
+	public int size() {
+		return sprites.size();
+	}
+
+	/**
+	 * Drops all the sprites.
+	 */
+	public void clear() {
+		sprites.clear();
+	}
+
+	private static final class Sprite {
+		private final BufferedImage image;
+		private volatile boolean used;
+
+		/*
+		 * New sprites count as used, or the eviction they trigger could
+		 * drop them at once.
+		 */
+		private Sprite(final BufferedImage img) {
+			image = img;
+			used = true;
+		}
+	}
+
+}
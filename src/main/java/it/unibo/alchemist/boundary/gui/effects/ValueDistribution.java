@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2010-2015, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.gui.effects;
+
+import java.util.Arrays;
+import java.util.function.IntToDoubleFunction;
+import java.util.stream.IntStream;
+
+/**
+ * How the values of a numeric {@link NodeColumn} are spread: their exact
+ * range, and a sorted sample from which quantiles are estimated, so that
+ * outliers can be left out of a color scale. Non finite values are ignored.
+ * Distributions are immutable, and can be shared by threads.
+ */
+public final class ValueDistribution {
+
+	/**
+	 * Maximum number of values quantiles are estimated from.
+	 */
+	public static final int SAMPLE_SIZE = 4096;
+	private static final int CHUNK = 16384;
+
+	private final double min, max;
+	private final long count;
+	private final double[] sample;
+
+	private ValueDistribution(final double lo, final double hi, final long n, final double[] sorted) {
+		min = lo;
+		max = hi;
+		count = n;
+		sample = sorted;
+	}
+
+	/**
+	 * Computes the distribution. The range is a reduction over all the
+	 * values: parallel reductions split them in chunks, and merge the partial
+	 * results. The sample is taken at evenly spaced positions.
+	 * 
+	 * @param values
+	 *            the values
+	 * @param size
+	 *            the number of values
+	 * @param parallel
+	 *            true to reduce in parallel
+	 * @return the distribution
+	 */
+	public static ValueDistribution of(final IntToDoubleFunction values, final int size, final boolean parallel) {
+		final int chunks = (size + CHUNK - 1) / CHUNK;
+		final IntStream ranges = parallel ? IntStream.range(0, chunks).parallel() : IntStream.range(0, chunks);
+		final double[] range = ranges.mapToObj(c -> {
+			double lo = Double.POSITIVE_INFINITY;
+			double hi = Double.NEGATIVE_INFINITY;
+			long n = 0;
+			for (int i = c * CHUNK; i < Math.min(size, (c + 1) * CHUNK); i++) {
+				final double v = values.applyAsDouble(i);
+				if (Double.isFinite(v)) {
+					lo = Math.min(lo, v);
+					hi = Math.max(hi, v);
+					n++;
+				}
+			}
+			return new double[] { lo, hi, n };
+		}).reduce(new double[] { Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, 0 },
+			(a, b) -> new double[] { Math.min(a[0], b[0]), Math.max(a[1], b[1]), a[2] + b[2] });
+		final long n = (long) range[2];
+		if (n == 0) {
+			return new ValueDistribution(Double.NaN, Double.NaN, 0, new double[0]);
+		}
+		/*
+		 * Rounded up, so that the sample spans all the values instead of
+		 * stopping at the first SAMPLE_SIZE strides.
+		 */
+		final int stride = (size + SAMPLE_SIZE - 1) / SAMPLE_SIZE;
+		final double[] taken = new double[Math.min(size, SAMPLE_SIZE)];
+		int sampled = 0;
+		for (int i = 0; i < size && sampled < taken.length; i += stride) {
+			final double v = values.applyAsDouble(i);
+			if (Double.isFinite(v)) {
+				taken[sampled++] = v;
+			}
+		}
+		final double[] sorted = Arrays.copyOf(taken, sampled);
+		Arrays.sort(sorted);
+		return new ValueDistribution(range[0], range[1], n, sorted);
+	}
+
+	/**
+	 * @return the number of finite values
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return the maximum value, NaN if there are no values
+	 */
+	public double getMax() {
+		return max;
+	}
+
+	/**
+	 * @return the minimum value, NaN if there are no values
+	 */
+	public double getMin() {
+		return min;
+	}
+
+	/**
+	 * Estimates a quantile, interpolating between the sampled values. The
+	 * extremes are exact.
+	 * 
+	 * @param q
+	 *            the quantile, in [0, 1]
+	 * @return the estimated value, NaN if there are no values
+	 */
+	public double quantile(final double q) {
+		if (count == 0) {
+			return Double.NaN;
+		}
+		if (q <= 0) {
+			return min;
+		}
+		if (q >= 1) {
+			return max;
+		}
+		if (sample.length == 0) {
+			return min + q * (max - min);
+		}
+		final double pos = q * (sample.length - 1);
+		final int i = (int) pos;
+		final double v = i + 1 < sample.length ? sample[i] + (pos - i) * (sample[i + 1] - sample[i]) : sample[i];
+		return Math.max(min, Math.min(max, v));
+	}
+
+}
@@ -52,10 +52,10 @@ public interface GraphicalOutputMonitor<T> extends OutputMonitor<T> {
 	void setEffectStack(List<Effect> l);
 
 	/**
-	 * If enabled, the monitor tries to synchronize the simulation time with the
-	 * real time, slowing down the simulator if needed. If the simulation is
-	 * slower than the real time, then the display refreshes fast enough to keep
-	 * the {@link #DEFAULT_FRAME_RATE}.
+	 * Tells the monitor that the simulation is being kept in sync with the
+	 * real time. Monitors must not slow the simulation down themselves: the
+	 * pacing is done once per simulation, by a
+	 * {@link it.unibo.alchemist.boundary.gui.RealTimePacer}.
 	 * 
 	 * @param rt
 	 *            true for the real time mode
@@ -15,7 +15,7 @@ package it.unibo.alchemist.boundary.l10n;
 // CHECKSTYLE:OFF
 public enum Res {
 
-	ADD_EFFECT, ALCHEMIST, ALCHEMIST_XML, ASPECT_RATIO, ATTACH_MONITOR, BLUE, BUILD_FILL_OVAL, BUILD_DRAW_CIRCLE, BUILD_DRAW_IMAGE, CANNOT_LOAD_STORE_OPTIONS, CHANGE_RANDOM_SEED, COLOR, COLOR_FUNCTION, CONTROLS, DONE, DETACH_MONITOR, EFFECT, EFFECT_BUILDER, EFFECTS_GROUP, EFFECT_TAB, ENABLE_DRAW_LINKS, FILE, FILE_NOT_VALID, FILE_PROCESSED, FLOW_TAB, GREEN, HEIGHT, HOME_TAB, IS_NOT_AN_INTEGER, IS_NOT_INITIALIZED_YET, JAR_FILE, JAR_LOAD_SUCCESSFULL, LOAD, LOAD_PARALLEL, LOAD_SINGLE, LOAD_JAR, MAX_REACTIVITY, MONITORS, NEAREST_NODE_IS, NO_DESCRIPTION_AVAILABLE, OPEN, OPEN_PERSPECTIVE, OUTPUT_MONITORS, PAUSE, PLAY, PROCESS_FILE, QUIT, RANDOM, RANDOM_REINIT_FAIL, RANDOM_REINIT_SUCCESS, REACTIVITY, READY_TO_PROCESS, REAL_TIME, RED, REMOVE_EFFECT, RGB, PERSPECTIVES, SAPERE_PERSPECTIVE, SAVE, SHOW_GROUP, SIZE, START, STEP, STOP, SWITCH_TO_PARALLEL, SWITCH_TO_SINGLE, TIME, USE_MOLECULE, USER_SELECTED, WARNING, WIDTH;
+	ADD_EFFECT, ALCHEMIST, ALCHEMIST_XML, ASPECT_RATIO, ATTACH_MONITOR, BLUE, BUILD_FILL_OVAL, BUILD_DRAW_CIRCLE, BUILD_DRAW_IMAGE, CANNOT_LOAD_STORE_OPTIONS, CHANGE_RANDOM_SEED, COLOR, COLOR_FUNCTION, CONTROLS, DONE, DETACH_MONITOR, EFFECT, EFFECT_BUILDER, EFFECTS_GROUP, EFFECT_TAB, ENABLE_DRAW_LINKS, FILE, FILE_NOT_VALID, FILE_PROCESSED, FLOW_TAB, GREEN, HEIGHT, HOME_TAB, IS_NOT_AN_INTEGER, IS_NOT_INITIALIZED_YET, JAR_FILE, JAR_LOAD_SUCCESSFULL, LOAD, LOAD_PARALLEL, LOAD_SINGLE, LOAD_JAR, MAX_REACTIVITY, MONITORS, NEAREST_NODE_IS, NO_DESCRIPTION_AVAILABLE, OPEN, OPEN_PERSPECTIVE, OUTPUT_MONITORS, PAUSE, PLAY, PROCESS_FILE, QUIT, RANDOM, RANDOM_REINIT_FAIL, RANDOM_REINIT_SUCCESS, REACTIVITY, READY_TO_PROCESS, REAL_TIME, RED, REMOVE_EFFECT, RGB, PERSPECTIVES, SAPERE_PERSPECTIVE, SAVE, SHOW_GROUP, SIZE, SPEED, START, STEP, STOP, SWITCH_TO_PARALLEL, SWITCH_TO_SINGLE, TIME, USE_MOLECULE, USER_SELECTED, WARNING, WIDTH;
 
 	private final static String english(final Res r) {
 		switch (r) {
@@ -141,6 +141,8 @@ public enum Res {
 			return "Show";
 		case SIZE:
 			return "Size";
+		case SPEED:
+			return "Real time speed";
 		case START:
 			return "Start";
 		case STEP:
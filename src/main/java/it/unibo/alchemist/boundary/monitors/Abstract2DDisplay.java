@@ -10,8 +10,22 @@ package it.unibo.alchemist.boundary.monitors;
 
 import it.unibo.alchemist.boundary.gui.AlchemistSwingUI;
 import it.unibo.alchemist.boundary.gui.effects.Effect;
+import it.unibo.alchemist.boundary.gui.effects.NodeBatch;
+import it.unibo.alchemist.boundary.gui.effects.NodeColumn;
+import it.unibo.alchemist.boundary.gui.effects.PixelCanvas;
+import it.unibo.alchemist.boundary.gui.effects.SpriteAtlas;
+import it.unibo.alchemist.boundary.gui.effects.ValueDistribution;
 import it.unibo.alchemist.boundary.interfaces.SwingOutputMonitor;
 import it.unibo.alchemist.boundary.l10n.Res;
+import it.unibo.alchemist.boundary.monitors.rendering.FrameGovernor;
+import it.unibo.alchemist.boundary.monitors.rendering.LinksRenderer;
+import it.unibo.alchemist.boundary.monitors.rendering.NodeAggregator;
+import it.unibo.alchemist.boundary.monitors.rendering.OffscreenRenderer;
+import it.unibo.alchemist.boundary.monitors.rendering.StaticLayer;
+import it.unibo.alchemist.boundary.monitors.rendering.TiledRasterizer;
+import it.unibo.alchemist.boundary.monitors.snapshots.EnvironmentSampler;
+import it.unibo.alchemist.boundary.monitors.snapshots.EnvironmentSnapshot;
+import it.unibo.alchemist.boundary.monitors.snapshots.PositionInterpolator;
 import it.unibo.alchemist.boundary.wormhole.implementation.AngleManager;
 import it.unibo.alchemist.boundary.wormhole.implementation.DoubleDimension;
 import it.unibo.alchemist.boundary.wormhole.implementation.ExpZoomManager;
@@ -24,20 +38,20 @@ import it.unibo.alchemist.boundary.wormhole.interfaces.IWormhole2D;
 import it.unibo.alchemist.boundary.wormhole.interfaces.IWormhole2D.Mode;
 import it.unibo.alchemist.boundary.wormhole.interfaces.IZoomManager;
 import it.unibo.alchemist.core.implementations.Simulation;
+import it.unibo.alchemist.core.interfaces.ISimulation;
+import it.unibo.alchemist.core.interfaces.Status;
 import it.unibo.alchemist.model.implementations.times.DoubleTime;
 import it.unibo.alchemist.model.interfaces.IEnvironment;
 import it.unibo.alchemist.model.interfaces.IEnvironment2DWithObstacles;
-import it.unibo.alchemist.model.interfaces.INeighborhood;
 import it.unibo.alchemist.model.interfaces.INode;
 import it.unibo.alchemist.model.interfaces.IObstacle2D;
-import it.unibo.alchemist.model.interfaces.IPosition;
 import it.unibo.alchemist.model.interfaces.IReaction;
 import it.unibo.alchemist.model.interfaces.ITime;
-import it.unibo.alchemist.utils.L;
 
 import java.awt.Color;
 import java.awt.Component;
 import java.awt.Graphics2D;
+import java.awt.Point;
 import java.awt.Shape;
 import java.awt.event.ComponentEvent;
 import java.awt.event.ComponentListener;
@@ -45,20 +59,31 @@ import java.awt.event.MouseEvent;
 import java.awt.event.MouseMotionListener;
 import java.awt.event.MouseWheelEvent;
 import java.awt.event.MouseWheelListener;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Dimension2D;
 import java.awt.geom.GeneralPath;
 import java.awt.geom.Path2D;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Set;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
+import java.util.function.IntToDoubleFunction;
 
 import javax.swing.JPanel;
 import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 import javax.swing.event.MouseInputListener;
 
 import org.jfree.graphics2d.svg.SVGGraphics2D;
@@ -75,42 +100,161 @@ import org.jfree.graphics2d.svg.SVGGraphics2D;
 public abstract class Abstract2DDisplay<T> extends JPanel implements SwingOutputMonitor<T> {
 	/**
 	 * The default frame rate.
+	 * 
+	 * @deprecated displays no longer pace the simulation: the snapshot rate
+	 *             is set with {@link #setTargetFrameRate(double)}
 	 */
+	@Deprecated
 	public static final byte DEFAULT_FRAME_RATE = 25;
 	/**
-	 * 
+	 * @deprecated displays no longer pace the simulation: see
+	 *             {@link it.unibo.alchemist.boundary.gui.RealTimePacer}
 	 */
+	@Deprecated
 	public static final long PAUSE_DETECTION_THRESHOLD = 200;
 
 	/**
 	 * How big (in pixels) the selected node should appear.
 	 */
 	private static final byte SELECTED_NODE_DRAWING_SIZE = 16, SELECTED_NODE_INTERNAL_SIZE = 10;
-	private static final int MS_PER_SECOND = 1000;
 	private static final long serialVersionUID = 511631766719686842L;
 
 	private static final double FREEDOM_RADIUS = 1d;
-	private static final double TIME_STEP = 1d / DEFAULT_FRAME_RATE;
+	/**
+	 * How far (in pixels) outside the view a node can be and still be drawn,
+	 * so that effects larger than a point do not pop at the borders.
+	 */
+	private static final int CULLING_MARGIN = 64;
+	private static final int VIEW_CORNERS = 4;
+	private static final int AFFINE_POINTS = 3;
+	/**
+	 * How many nodes must be drawn before splitting the work in tiles pays
+	 * off.
+	 */
+	private static final int TILING_THRESHOLD = 20000;
+	/**
+	 * How many nodes must be drawn before writing pixels directly pays off.
+	 */
+	private static final int POINT_CLOUD_THRESHOLD = 100000;
+	/**
+	 * Geometry version before the first frame.
+	 */
+	private static final long NO_GEOMETRY = -1;
+	/**
+	 * How long (in milliseconds) navigation must be idle before drawing a
+	 * new frame: until then, the last frame is moved to follow the camera.
+	 */
+	private static final int NAVIGATION_IDLE = 150;
+	/*
+	 * How often (in milliseconds) to check if a step left without a snapshot
+	 * was the last one before a pause.
+	 */
+	private static final int TRAILING_CHECK = 100;
+	/*
+	 * Step count before a trailing check.
+	 */
+	private static final long NO_STEP = -1;
+	/**
+	 * Below this difference (in pixels) the camera of a frame is deemed the
+	 * current one.
+	 */
+	private static final double CAMERA_TOLERANCE = 1e-3;
+	/**
+	 * Default time (in milliseconds) a pass of a progressive frame may take.
+	 */
+	private static final long DEFAULT_PASS_BUDGET = 40;
+	/**
+	 * Nodes drawn between two checks of the pass budget.
+	 */
+	private static final int PROGRESSIVE_CHUNK = 16384;
+	private static final int PROGRESS_BAR_HEIGHT = 3;
+	private static final int PROGRESS_TEXT_MARGIN = 4;
+	private static final Color PROGRESS_BACKGROUND = new Color(0, 0, 0, 64);
+	private static final Color PROGRESS_COLOR = new Color(0, 0, 0, 192);
+	private static final double PERCENT = 100;
 	
 	private boolean realTime;
 	private boolean initialized;
 	private int st;
-	private List<Effect> effectStack;
+	private volatile List<Effect> effectStack;
+	/*
+	 * The effects of the last frame requested, copied by the event dispatch
+	 * thread: the simulation thread reads their columns.
+	 */
+	private volatile List<Effect> sceneEffects;
 	private IEnvironment<T> env;
 	private List<? extends IObstacle2D> obstacles;
-	private final Map<INode<T>, INeighborhood<T>> neighbors = new ConcurrentHashMap<>();
-	private final Map<INode<T>, IPosition> positions = new ConcurrentHashMap<>();
-	private Optional<INode<T>> hooked = Optional.empty();
+	private final EnvironmentSampler<T> sampler = new EnvironmentSampler<>();
+	private final LinksRenderer linksRenderer = new LinksRenderer();
+	private final TiledRasterizer tiledRasterizer = new TiledRasterizer();
+	private final NodeAggregator aggregator = new NodeAggregator();
+	private final StaticLayer obstaclesLayer = new StaticLayer();
+	private final StaticLayer linksLayer = new StaticLayer();
+	private final FrameGovernor governor = new FrameGovernor();
+	private volatile boolean tiledRendering = true;
+	private volatile boolean pointCloudRendering = true;
+	private volatile boolean levelOfDetail = true;
+	private volatile boolean layerCaching = true;
+	private volatile boolean progressiveRendering = true;
+	private volatile long passBudget = TimeUnit.MILLISECONDS.toNanos(DEFAULT_PASS_BUDGET);
+	/*
+	 * Render thread only: the frame being drawn progressively, if any, and
+	 * how long the nodes of the last complete frame took to draw.
+	 */
+	private Progress progress;
+	private long nodesCost;
+	/*
+	 * Render thread only: the geometry version of the last frame.
+	 */
+	private long lastGeometry = NO_GEOMETRY;
+	private BufferedImage progressImage;
+	private long[] sortKeys = new long[0];
+	private int[] sortedVisible = new int[0];
+	private double[] sortedCoords = new double[0];
+	private volatile PositionInterpolator<T> interpolator;
+	private volatile boolean moving;
+	private double[] viewCoords = new double[0];
+	private int[] visible = new int[0];
+	private final double[] corners = new double[2 * VIEW_CORNERS];
+	private volatile Optional<INode<T>> hooked = Optional.empty();
+	private volatile Point2D hookedPosition;
+	private volatile OffscreenRenderer<Scene> offscreen;
+	private final AtomicBoolean framePosted = new AtomicBoolean();
+	private final Timer navigationTimer = new Timer(NAVIGATION_IDLE, e -> updateView());
+	/*
+	 * Set when a step is not sampled: if the simulation stops there, the
+	 * trailing timer samples the state it stopped in.
+	 */
+	private final AtomicBoolean unsampled = new AtomicBoolean();
+	private final Timer trailingTimer = new Timer(TRAILING_CHECK, e -> trailingSample());
+	/*
+	 * Event dispatch thread only: the step count of the simulation at the
+	 * last trailing check.
+	 */
+	private long trailingStep = NO_STEP;
+	/*
+	 * The simulation displayed, looked up at its first step.
+	 */
+	private volatile ISimulation<T> simulation;
+	private final double[] frameCorners = new double[2 * AFFINE_POINTS];
+	/*
+	 * Render thread only: the scene of the last frame drawn offscreen.
+	 */
+	private Scene lastScene;
 	private IWormhole2D wormhole;
 	private IAngleManager angleManager;
 	private IZoomManager zoomManager;
 	private IPointerVelocityManager mouseVelocity;
-	private double dist = java.lang.Double.POSITIVE_INFINITY, lasttime;
-	private boolean firstTime = true, paintLinks;
-	private long timeInit = System.currentTimeMillis();
-	private int mousex, mousey, nearestx, nearesty;
+	private boolean firstTime = true;
+	private volatile boolean paintLinks;
+	private volatile int mousex, mousey;
+	/*
+	 * Where the nearest node is highlighted, null if nowhere.
+	 */
+	private volatile Point marker;
 	private final Semaphore mutex = new Semaphore(1);
-	private INode<T> nearest;
+	private EnvironmentSnapshot<T> lastFrame;
+	private volatile INode<T> nearest;
 	private final MouseManager mouseManager = new MouseManager();
 	private final ComponentManager componentManager = new ComponentManager();
 
@@ -144,37 +288,39 @@ public abstract class Abstract2DDisplay<T> extends JPanel implements SwingOutput
 	public Abstract2DDisplay(final int step) {
 		super();
 		st = step;
+		navigationTimer.setRepeats(false);
 		setBackground(Color.WHITE);
 		initialized = false;
 	}
 
 	/**
-	 * Updates nodes positions and neighborhoods.
+	 * Updates nodes positions and neighborhoods. The new state is written in a
+	 * free buffer and then published: this method never waits for the view to
+	 * finish painting. The node columns used by the effects are captured
+	 * along with the positions.
 	 * 
 	 */
 	protected void computeNodes() {
-		positions.clear();
-		neighbors.clear();
-		try {
-			for (final INode<T> n : env) {
-				positions.put(n, env.getPosition(n));
-				neighbors.put(n, env.getNeighborhood(n).clone());
+		final List<Effect> scene = sceneEffects;
+		final List<Effect> effects = scene == null ? effectStack : scene;
+		if (effects != null) {
+			final Set<NodeColumn> columns = new LinkedHashSet<>();
+			for (final Effect effect : effects) {
+				columns.addAll(effect.getColumns());
 			}
-		} catch (final CloneNotSupportedException e) {
-			L.error(e);
+			sampler.setColumns(columns);
 		}
+		sampler.sample(env, obstacles);
 	}
 
-	private Shape convertObstacle(final IObstacle2D o) {
+	private static Shape convertObstacle(final IObstacle2D o, final IWormhole2D camera) {
 		final Rectangle2D r = o.getBounds2D();
-		final Point2D[] points = new Point2D.Double[] { new Point2D.Double(r.getX(), r.getY()), new Point2D.Double(r.getX() + r.getWidth(), r.getY()), new Point2D.Double(r.getX() + r.getWidth(), r.getY() + r.getHeight()), new Point2D.Double(r.getX(), r.getY() + r.getHeight()) };
+		final double[] points = new double[] { r.getX(), r.getY(), r.getX() + r.getWidth(), r.getY(), r.getX() + r.getWidth(), r.getY() + r.getHeight(), r.getX(), r.getY() + r.getHeight() };
+		camera.getViewPoints(points, 0, points, 0, points.length / 2);
 		final Path2D path = new GeneralPath();
-		for (int i = 0; i < points.length; i++) {
-			points[i] = wormhole.getViewPoint(points[i]);
-			if (i == 0) {
-				path.moveTo(points[i].getX(), points[i].getY());
-			}
-			path.lineTo(points[i].getX(), points[i].getY());
+		path.moveTo(points[0], points[1]);
+		for (int i = 2; i < points.length; i += 2) {
+			path.lineTo(points[i], points[i + 1]);
 		}
 		path.closePath();
 		return path;
@@ -182,6 +328,11 @@ public abstract class Abstract2DDisplay<T> extends JPanel implements SwingOutput
 
 	@Override
 	public void dispose() {
+		if (offscreen != null) {
+			offscreen.dispose();
+		}
+		navigationTimer.stop();
+		trailingTimer.stop();
 		removeMouseListener(mouseManager);
 		removeMouseMotionListener(mouseManager);
 		removeMouseWheelListener(mouseManager);
@@ -200,7 +351,11 @@ public abstract class Abstract2DDisplay<T> extends JPanel implements SwingOutput
 	protected abstract void drawBackground(final Graphics2D g);
 
 	/**
-	 * Actually draws the environment on the view.
+	 * Actually draws the environment on the view. If this display
+	 * {@link #rendersOffscreen() renders offscreen}, this only copies the
+	 * last completed frame, and highlights the node closest to the mouse. If
+	 * the camera changed since the frame was drawn, the frame is transformed
+	 * to match it, until a new one is ready.
 	 * 
 	 * @param g
 	 *            {@link Graphics2D} object responsible for drawing
@@ -209,73 +364,398 @@ public abstract class Abstract2DDisplay<T> extends JPanel implements SwingOutput
 		if (wormhole == null || !isVisible() || !isEnabled()) {
 			return;
 		}
+		if (offscreen == null) {
+			drawScene(g, new Scene(wormhole, snapshotEffects()), null);
+		} else {
+			final BufferedImage image = offscreen.getLatestImage();
+			if (image != null) {
+				final AffineTransform delta = cameraDelta(offscreen.getLatestParams().camera, image);
+				if (delta == null) {
+					g.drawImage(image, 0, 0, null);
+				} else {
+					g.drawImage(image, delta, null);
+				}
+			}
+			/*
+			 * The highlight is not part of the frame: moving it only
+			 * repaints its old and new areas.
+			 */
+			drawMarker(g, marker);
+		}
+	}
 
-		mutex.acquireUninterruptibly();
-
+	/**
+	 * Draws the latest snapshot. Must be always called from the same thread,
+	 * the only one consuming the snapshots. If the destination is a raster
+	 * image, the effects may be drawn in parallel tiles, may stamp sprites or
+	 * may write the image pixels directly. Crowded views are drawn aggregated
+	 * by cell. Fixed obstacles, and links while no node moves, are kept in a
+	 * static layer drawn again only when they or the camera change. If the
+	 * nodes took longer than a pass to draw in the last frame, they are drawn
+	 * progressively, see {@link #setProgressiveRendering(boolean)}.
+	 */
+	private void drawScene(final Graphics2D g, final Scene scene, final BufferedImage raster) {
+		final long start = System.nanoTime();
+		final IWormhole2D camera = scene.camera;
+		final List<Effect> effects = scene.effects;
+		final EnvironmentSnapshot<T> frame = sampler.acquireLatest();
+		lastFrame = frame;
+		final PositionInterpolator<T> motion = interpolator;
+		if (motion != null) {
+			motion.update(frame, start);
+		}
+		moving = motion != null && motion.isMoving();
 		if (hooked.isPresent()) {
-			final IPosition hcoor = positions.get(hooked.get());
-			final Point2D hp = wormhole.getViewPoint(new Point2D.Double(hcoor.getCoordinate(0), hcoor.getCoordinate(1)));
-			if (hp.distance(getCenter()) > FREEDOM_RADIUS) {
-				wormhole.setDeltaViewPosition(NSEAlg2DHelper.variation(getCenter(), hp));
+			final int h = frame.indexOf(hooked.get());
+			if (h >= 0) {
+				hookedPosition = positionOf(frame, h);
+				final Point2D center = getCenter(camera);
+				final Point2D hp = camera.getViewPoint(hookedPosition);
+				if (hp.distance(center) > FREEDOM_RADIUS) {
+					camera.setDeltaViewPosition(NSEAlg2DHelper.variation(center, hp));
+				}
 			}
 		}
 
-		g.setColor(Color.BLACK);
-		if (obstacles != null) {
-			for (final IObstacle2D o : obstacles) {
-//				final Rectangle2D b = o.getBounds2D();
-//				final Point2D.Double pt1 = new Point2D.Double(b.getMinX(), b.getMinY());
-//				final Point2D.Double pt2 = new Point2D.Double(b.getMinX(), b.getMaxY());
-//				final Point2D.Double pt3 = new Point2D.Double(b.getMaxX(), b.getMinY());
-//				final Point2D.Double pt4 = new Point2D.Double(b.getMaxX(), b.getMaxY());
-//				if (wormhole.isInsideView(pt1) || wormhole.isInsideView(pt2) || wormhole.isInsideView(pt3) || wormhole.isInsideView(pt4)) {
-					g.fill(convertObstacle(o));
-//				}
+		final boolean links = paintLinks;
+		final boolean cache = raster != null && layerCaching;
+		final boolean staticObstacles = cache && !envHasMobileObstacles(env) && !frame.getObstacles().isEmpty();
+		/*
+		 * Links are cached only once their geometry survived a frame:
+		 * while nodes move, caching them would repaint the layer and then
+		 * copy it at every frame.
+		 */
+		final long geometry = frame.getGeometryVersion();
+		final boolean staticLinks = cache && links && !moving && geometry == lastGeometry;
+		lastGeometry = geometry;
+		if (staticObstacles) {
+			obstaclesLayer.draw(g, camera, raster.getWidth(), raster.getHeight(), frame.getObstacles(), 0,
+					lg -> drawObstacles(lg, frame, camera));
+		} else {
+			drawObstacles(g, frame, camera);
+		}
+		final int size = frame.size();
+		if (viewCoords.length < 2 * size) {
+			viewCoords = new double[2 * size];
+			visible = new int[size];
+		}
+		final Dimension2D viewSize = camera.getViewSize();
+		final int visibleCount;
+		if (links) {
+			/*
+			 * Links may cross the view while both ends are outside of it.
+			 */
+			for (int i = 0; i < size; i++) {
+				visible[i] = i;
 			}
+			visibleCount = size;
+		} else {
+			visibleCount = cullInEnvironment(frame, camera, viewSize);
 		}
-		if (paintLinks) {
-			g.setColor(Color.GRAY);
-			for (final Entry<INode<T>, INeighborhood<T>> entry : neighbors.entrySet()) {
-				final IPosition coord = positions.get(entry.getKey());
-				final Point2D s = wormhole.getViewPoint(new Point2D.Double(coord.getCoordinate(0), coord.getCoordinate(1)));
-				for (final INode<?> n : entry.getValue()) {
-					final IPosition coorddest = positions.get(n);
-					final Point2D d = wormhole.getViewPoint(new Point2D.Double(coorddest.getCoordinate(0), coorddest.getCoordinate(1)));
-					g.drawLine((int) s.getX(), (int) s.getY(), (int) d.getX(), (int) d.getY());
-				}
+		/*
+		 * viewCoords is indexed like visible: when links are painted, that is
+		 * the node index, as the links renderer expects.
+		 */
+		if (motion == null) {
+			for (int k = 0; k < visibleCount; k++) {
+				final int i = visible[k];
+				viewCoords[2 * k] = frame.getX(i);
+				viewCoords[2 * k + 1] = frame.getY(i);
 			}
+		} else {
+			for (int k = 0; k < visibleCount; k++) {
+				final int i = visible[k];
+				viewCoords[2 * k] = motion.getX(i);
+				viewCoords[2 * k + 1] = motion.getY(i);
+			}
+		}
+		camera.getViewPoints(viewCoords, 0, viewCoords, 0, visibleCount);
+		updateNearest(camera, mousex, mousey);
+		if (staticLinks) {
+			linksLayer.draw(g, camera, raster.getWidth(), raster.getHeight(), linksRenderer, geometry,
+					lg -> drawLinks(lg, frame, viewSize));
+		} else if (links) {
+			drawLinks(g, frame, viewSize);
 		}
 		g.setColor(Color.GREEN);
-		if (effectStack != null) {
-			for (final Effect effect : effectStack) {
-				for (final Entry<INode<T>, IPosition> entry : positions.entrySet()) {
-					final IPosition coords = entry.getValue();
-					final INode<T> node = entry.getKey();
-					final Point2D s = wormhole.getViewPoint(new Point2D.Double(coords.getCoordinate(0), coords.getCoordinate(1)));
-					if (wormhole.isInsideView(s)) {
-						final double cd = Math.hypot(s.getX() - mousex, s.getY() - mousey);
-						if (cd <= dist) {
-							nearest = node;
-							nearestx = (int) s.getX();
-							nearesty = (int) s.getY();
-							dist = cd;
-						}
-						effect.apply(g, node, (int) s.getX(), (int) s.getY());
-					}
+		g.setRenderingHint(SpriteAtlas.KEY_SPRITES, raster != null ? SpriteAtlas.VALUE_SPRITES_ON : SpriteAtlas.VALUE_SPRITES_OFF);
+		if (effects != null) {
+			int drawn = 0;
+			for (int k = 0; k < visibleCount; k++) {
+				final double x = viewCoords[2 * k];
+				final double y = viewCoords[2 * k + 1];
+				if (x >= -CULLING_MARGIN && x <= viewSize.getWidth() + CULLING_MARGIN
+						&& y >= -CULLING_MARGIN && y <= viewSize.getHeight() + CULLING_MARGIN) {
+					visible[drawn] = visible[k];
+					viewCoords[2 * drawn] = x;
+					viewCoords[2 * drawn + 1] = y;
+					drawn++;
 				}
 			}
+			final int width = (int) Math.ceil(viewSize.getWidth());
+			final int height = (int) Math.ceil(viewSize.getHeight());
+			if (levelOfDetail && aggregator.shouldAggregate(drawn, viewSize.getWidth(), viewSize.getHeight())) {
+				aggregator.draw(g, PixelCanvas.of(raster), width, height, new VisibleNodes(frame, 0, drawn), effects);
+			} else if (raster != null && progressiveRendering && nodesCost > passBudget && drawn > PROGRESSIVE_CHUNK) {
+				startProgress(g, raster, scene, frame, drawn);
+			} else {
+				final long nodesStart = System.nanoTime();
+				drawNodes(g, raster, effects, new VisibleNodes(frame, 0, drawn), drawn, width, height);
+				nodesCost = System.nanoTime() - nodesStart;
+			}
 		}
-		if (nearest != null) {
+		if (raster == null) {
+			drawMarker(g, marker);
+		}
+		if (progress == null) {
+			governor.rendered(System.nanoTime() - start);
+		} else {
+			progress.cost = System.nanoTime() - start;
+		}
+	}
+
+	/*
+	 * Draws a batch of nodes, out of the total to draw in the frame, with the
+	 * fastest technique the destination and the total allow.
+	 */
+	private void drawNodes(final Graphics2D g, final BufferedImage raster, final List<Effect> effects, final NodeBatch batch, final int total, final int width, final int height) {
+		final PixelCanvas canvas = pointCloudRendering && total >= POINT_CLOUD_THRESHOLD ? PixelCanvas.of(raster) : null;
+		if (canvas != null) {
+			for (final Effect effect : effects) {
+				if (!effect.rasterize(canvas, batch)) {
+					effect.apply(g, batch);
+				}
+			}
+		} else if (raster != null && tiledRendering && batch.size() >= TILING_THRESHOLD && tiledRasterizer.getParallelism() > 1) {
+			tiledRasterizer.draw(g, width, height, batch, effects);
+		} else {
+			for (final Effect effect : effects) {
+				effect.apply(g, batch);
+			}
+		}
+	}
+
+	/*
+	 * Sorts the nodes to draw by distance from the focus, copies what has been
+	 * drawn so far on a working image, and draws the first pass.
+	 */
+	private void startProgress(final Graphics2D g, final BufferedImage raster, final Scene scene, final EnvironmentSnapshot<T> frame, final int drawn) {
+		sortByDistance(focusOf(scene.camera, frame), drawn);
+		if (progressImage == null || progressImage.getWidth() != raster.getWidth() || progressImage.getHeight() != raster.getHeight()) {
+			progressImage = new BufferedImage(raster.getWidth(), raster.getHeight(), BufferedImage.TYPE_INT_RGB);
+		}
+		final Graphics2D pg = progressImage.createGraphics();
+		pg.drawImage(raster, 0, 0, null);
+		pg.setRenderingHints(g.getRenderingHints());
+		pg.setColor(g.getColor());
+		progress = new Progress(scene, frame, drawn, pg);
+		drawPass(g, progress);
+	}
+
+	/*
+	 * The hooked node, if drawn, or the center of the view.
+	 */
+	private Point2D focusOf(final IWormhole2D camera, final EnvironmentSnapshot<T> frame) {
+		if (hooked.isPresent()) {
+			final int h = frame.indexOf(hooked.get());
+			if (h >= 0) {
+				final Point2D hp = camera.getViewPoint(positionOf(frame, h));
+				if (camera.isInsideView(hp)) {
+					return hp;
+				}
+			}
+		}
+		return getCenter(camera);
+	}
+
+	/*
+	 * Keys hold the squared distance in the high half, as float bits (which
+	 * sort like non negative floats do), and the position in the low half.
+	 */
+	private void sortByDistance(final Point2D focus, final int drawn) {
+		if (sortKeys.length < drawn) {
+			sortKeys = new long[drawn];
+			sortedVisible = new int[drawn];
+			sortedCoords = new double[2 * drawn];
+		}
+		for (int k = 0; k < drawn; k++) {
+			final double dx = viewCoords[2 * k] - focus.getX();
+			final double dy = viewCoords[2 * k + 1] - focus.getY();
+			sortKeys[k] = (long) Float.floatToIntBits((float) (dx * dx + dy * dy)) << Integer.SIZE | k;
+		}
+		Arrays.sort(sortKeys, 0, drawn);
+		for (int j = 0; j < drawn; j++) {
+			final int k = (int) sortKeys[j];
+			sortedVisible[j] = visible[k];
+			sortedCoords[2 * j] = viewCoords[2 * k];
+			sortedCoords[2 * j + 1] = viewCoords[2 * k + 1];
+		}
+		System.arraycopy(sortedVisible, 0, visible, 0, drawn);
+		System.arraycopy(sortedCoords, 0, viewCoords, 0, 2 * drawn);
+	}
+
+	/*
+	 * Draws chunks of nodes on the working image until the pass budget is
+	 * spent, then copies the image on the frame. Returns true if the frame
+	 * is complete. The time spent is accounted by the callers.
+	 */
+	private boolean drawPass(final Graphics2D g, final Progress p) {
+		final long passStart = System.nanoTime();
+		final int width = progressImage.getWidth();
+		final int height = progressImage.getHeight();
+		while (p.next < p.total) {
+			final int to = Math.min(p.total, p.next + PROGRESSIVE_CHUNK);
+			drawNodes(p.graphics, progressImage, p.scene.effects, new VisibleNodes(p.frame, p.next, to - p.next), p.total, width, height);
+			p.next = to;
+			if (System.nanoTime() - passStart >= passBudget) {
+				break;
+			}
+		}
+		p.nodesCost += System.nanoTime() - passStart;
+		g.drawImage(progressImage, 0, 0, null);
+		if (p.next < p.total) {
+			drawProgress(g, (double) p.next / p.total, width, height);
+			return false;
+		}
+		p.graphics.dispose();
+		progress = null;
+		nodesCost = p.nodesCost;
+		return true;
+	}
+
+	/*
+	 * Drops a progressive frame. The nodes it did not reach are assumed to
+	 * cost as much as those it drew, so that the next frames are drawn
+	 * progressively too if they would take as long.
+	 */
+	private void abandon(final Progress p) {
+		p.graphics.dispose();
+		progress = null;
+		if (p.next > 0) {
+			nodesCost = (long) (p.nodesCost * ((double) p.total / p.next));
+		}
+	}
+
+	private static void drawProgress(final Graphics2D g, final double done, final int width, final int height) {
+		g.setColor(PROGRESS_BACKGROUND);
+		g.fillRect(0, height - PROGRESS_BAR_HEIGHT, width, PROGRESS_BAR_HEIGHT);
+		g.setColor(PROGRESS_COLOR);
+		g.fillRect(0, height - PROGRESS_BAR_HEIGHT, (int) (width * done), PROGRESS_BAR_HEIGHT);
+		g.drawString((int) (done * PERCENT) + "%", PROGRESS_TEXT_MARGIN, height - PROGRESS_BAR_HEIGHT - PROGRESS_TEXT_MARGIN);
+	}
+
+	/*
+	 * The transformation from the view of a frame to the current view, or
+	 * null if they match. Three corners of the frame are mapped back to the
+	 * environment and forward with the current camera: cameras are affine,
+	 * so they determine the whole transformation.
+	 */
+	private AffineTransform cameraDelta(final IWormhole2D drawnWith, final BufferedImage image) {
+		if (drawnWith == null || drawnWith == wormhole) {
+			return null;
+		}
+		final double w = image.getWidth();
+		final double h = image.getHeight();
+		final double[] points = frameCorners;
+		points[0] = 0;
+		points[1] = 0;
+		points[2] = w;
+		points[3] = 0;
+		points[4] = 0;
+		points[5] = h;
+		drawnWith.getEnvPoints(points, 0, points, 0, AFFINE_POINTS);
+		wormhole.getViewPoints(points, 0, points, 0, AFFINE_POINTS);
+		if (Math.abs(points[0]) < CAMERA_TOLERANCE && Math.abs(points[1]) < CAMERA_TOLERANCE
+				&& Math.abs(points[2] - w) < CAMERA_TOLERANCE && Math.abs(points[3]) < CAMERA_TOLERANCE
+				&& Math.abs(points[4]) < CAMERA_TOLERANCE && Math.abs(points[5] - h) < CAMERA_TOLERANCE) {
+			return null;
+		}
+		return new AffineTransform((points[2] - points[0]) / w, (points[3] - points[1]) / w,
+				(points[4] - points[0]) / h, (points[5] - points[1]) / h, points[0], points[1]);
+	}
+
+	/*
+	 * Camera changes made by the user: the current frame is moved at once,
+	 * and a new one is drawn when the user stops.
+	 */
+	private void navigated() {
+		if (offscreen == null) {
+			updateView();
+		} else {
+			super.repaint();
+			navigationTimer.restart();
+		}
+	}
+
+	private static void drawMarker(final Graphics2D g, final Point p) {
+		if (p != null) {
 			g.setColor(Color.RED);
-			g.fillOval(nearestx - SELECTED_NODE_DRAWING_SIZE / 2, nearesty - SELECTED_NODE_DRAWING_SIZE / 2, SELECTED_NODE_DRAWING_SIZE, SELECTED_NODE_DRAWING_SIZE);
+			g.fillOval(p.x - SELECTED_NODE_DRAWING_SIZE / 2, p.y - SELECTED_NODE_DRAWING_SIZE / 2, SELECTED_NODE_DRAWING_SIZE, SELECTED_NODE_DRAWING_SIZE);
 			g.setColor(Color.YELLOW);
-			g.fillOval(nearestx - SELECTED_NODE_INTERNAL_SIZE / 2, nearesty - SELECTED_NODE_INTERNAL_SIZE / 2, SELECTED_NODE_INTERNAL_SIZE, SELECTED_NODE_INTERNAL_SIZE);
+			g.fillOval(p.x - SELECTED_NODE_INTERNAL_SIZE / 2, p.y - SELECTED_NODE_INTERNAL_SIZE / 2, SELECTED_NODE_INTERNAL_SIZE, SELECTED_NODE_INTERNAL_SIZE);
+		}
+	}
+
+	/*
+	 * Repaints the area of a highlight, with a pixel of margin for rounding.
+	 */
+	private void repaintMarker(final Point p) {
+		if (p != null) {
+			repaint(p.x - SELECTED_NODE_DRAWING_SIZE / 2 - 1, p.y - SELECTED_NODE_DRAWING_SIZE / 2 - 1, SELECTED_NODE_DRAWING_SIZE + 2, SELECTED_NODE_DRAWING_SIZE + 2);
+		}
+	}
+
+	private static void drawObstacles(final Graphics2D g, final EnvironmentSnapshot<?> frame, final IWormhole2D camera) {
+		g.setColor(Color.BLACK);
+		for (final IObstacle2D o : frame.getObstacles()) {
+			g.fill(convertObstacle(o, camera));
 		}
-		mutex.release();
+	}
+
+	private void drawLinks(final Graphics2D g, final EnvironmentSnapshot<T> frame, final Dimension2D viewSize) {
+		g.setColor(Color.GRAY);
+		linksRenderer.draw(g, frame, viewCoords, viewSize.getWidth(), viewSize.getHeight());
+	}
+
+	/**
+	 * Maps the view, enlarged by the culling margin, back to the environment,
+	 * and collects the nodes inside its bounding box.
+	 */
+	private int cullInEnvironment(final EnvironmentSnapshot<T> frame, final IWormhole2D camera, final Dimension2D viewSize) {
+		double minX = Double.POSITIVE_INFINITY;
+		double minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY;
+		double maxY = Double.NEGATIVE_INFINITY;
+		for (int corner = 0; corner < VIEW_CORNERS; corner++) {
+			corners[2 * corner] = (corner & 1) == 0 ? -CULLING_MARGIN : viewSize.getWidth() + CULLING_MARGIN;
+			corners[2 * corner + 1] = (corner & 2) == 0 ? -CULLING_MARGIN : viewSize.getHeight() + CULLING_MARGIN;
+		}
+		camera.getEnvPoints(corners, 0, corners, 0, VIEW_CORNERS);
+		for (int corner = 0; corner < VIEW_CORNERS; corner++) {
+			minX = Math.min(minX, corners[2 * corner]);
+			minY = Math.min(minY, corners[2 * corner + 1]);
+			maxX = Math.max(maxX, corners[2 * corner]);
+			maxY = Math.max(maxY, corners[2 * corner + 1]);
+		}
+		final int count = frame.getSpatialIndex().collectInside(minX, minY, maxX, maxY, visible);
+		/*
+		 * Keep the painting order stable as nodes move across cells.
+		 */
+		Arrays.sort(visible, 0, count);
+		return count;
 	}
 
 	@Override
 	public void finished(final IEnvironment<T> environment, final ITime time, final long step) {
+		/*
+		 * Show the final state, even if the last steps were not sampled.
+		 */
+		if (!firstTime) {
+			synchronized (sampler) {
+				unsampled.set(false);
+				update();
+			}
+		}
 		reset();
 	}
 
@@ -288,6 +768,11 @@ public abstract class Abstract2DDisplay<T> extends JPanel implements SwingOutput
 		return new Point2D.Double(getWidth() / 2d, getHeight() / 2d);
 	}
 
+	private static Point2D getCenter(final IWormhole2D camera) {
+		final Dimension2D size = camera.getViewSize();
+		return new Point2D.Double(size.getWidth() / 2d, size.getHeight() / 2d);
+	}
+
 	/**
 	 * @return the environment
 	 */
@@ -306,11 +791,29 @@ public abstract class Abstract2DDisplay<T> extends JPanel implements SwingOutput
 	 * @param component you want to represent
 	 * @return a String containing the screenshot in svg format
 	 */
-	public String getSVGScreenShot() {		
-		SVGGraphics2D svg = new SVGGraphics2D(this.getWidth(), this.getHeight());
-		
-		this.paint(svg);
-		return svg.getSVGDocument();
+	public String getSVGScreenShot() {
+		if (offscreen == null || SwingUtilities.isEventDispatchThread()) {
+			/*
+			 * The event dispatch thread never waits for the render thread:
+			 * it gets the last completed frame, as an image.
+			 */
+			final SVGGraphics2D svg = new SVGGraphics2D(this.getWidth(), this.getHeight());
+			this.paint(svg);
+			return svg.getSVGDocument();
+		}
+		/*
+		 * Draw the vectors again on the render thread, with the last scene.
+		 */
+		return offscreen.call(() -> {
+			final Scene scene = lastScene;
+			if (scene == null) {
+				return new SVGGraphics2D(getWidth(), getHeight()).getSVGDocument();
+			}
+			final Dimension2D size = scene.camera.getViewSize();
+			final SVGGraphics2D svg = new SVGGraphics2D((int) size.getWidth(), (int) size.getHeight());
+			paintFrame(svg, null, scene);
+			return svg.getSVGDocument();
+		});
 	}
 
 	/**
@@ -348,6 +851,9 @@ public abstract class Abstract2DDisplay<T> extends JPanel implements SwingOutput
 		angleManager = new AngleManager(AngleManager.DEF_DEG_PER_PIXEL);
 		zoomManager = new ExpZoomManager(wormhole.getZoom(), ExpZoomManager.DEF_BASE);
 		mouseVelocity = new NSEPointerVelocityHandler();
+		if (offscreen == null && rendersOffscreen()) {
+			offscreen = new OffscreenRenderer<>(getClass().getSimpleName() + " renderer", this::paintFrame, super::repaint);
+		}
 		computeNodes();
 		if (env instanceof IEnvironment2DWithObstacles) {
 			loadObstacles();
@@ -374,6 +880,14 @@ public abstract class Abstract2DDisplay<T> extends JPanel implements SwingOutput
 		return initialized;
 	}
 
+	/**
+	 * @return true if, in the last frame drawn, the nodes were still moving
+	 *         towards the latest snapshot
+	 */
+	protected boolean isMoving() {
+		return moving;
+	}
+
 	/**
 	 * @return true if this monitor is trying to draw in realtime
 	 */
@@ -402,6 +916,10 @@ public abstract class Abstract2DDisplay<T> extends JPanel implements SwingOutput
 	 */
 	public void reset() {
 		firstTime = true;
+		sampler.invalidate();
+		governor.reset();
+		obstaclesLayer.invalidate();
+		linksLayer.invalidate();
 	}
 
 	/**
@@ -412,8 +930,59 @@ public abstract class Abstract2DDisplay<T> extends JPanel implements SwingOutput
 	protected void setDist(final int x, final int y) {
 		mousex = x;
 		mousey = y;
+		if (wormhole == null) {
+			return;
+		}
+		if (offscreen == null) {
+			final INode<T> previous = nearest;
+			updateNearest(wormhole, x, y);
+			if (nearest != previous) {
+				updateView();
+			}
+		} else {
+			final IWormhole2D camera = copyCamera();
+			offscreen.execute(() -> {
+				final INode<T> previous = nearest;
+				final Point previousMarker = marker;
+				updateNearest(camera, x, y);
+				if (nearest != previous) {
+					final Point currentMarker = marker;
+					SwingUtilities.invokeLater(() -> {
+						updateToolTip();
+						repaintMarker(previousMarker);
+						repaintMarker(currentMarker);
+					});
+				}
+			});
+		}
+		updateToolTip();
+	}
+
+	/*
+	 * Finds the node closest to a point, with the current camera, and hands
+	 * it to an action on the event dispatch thread. Offscreen, the search
+	 * runs on the render thread, which owns the snapshot, after the frames
+	 * and the hover updates already queued.
+	 */
+	private void pick(final int x, final int y, final Consumer<INode<T>> action) {
+		if (wormhole == null) {
+			return;
+		}
+		if (offscreen == null) {
+			updateNearest(wormhole, x, y);
+			action.accept(nearest);
+		} else {
+			final IWormhole2D camera = copyCamera();
+			offscreen.execute(() -> {
+				updateNearest(camera, x, y);
+				final INode<T> picked = nearest;
+				SwingUtilities.invokeLater(() -> action.accept(picked));
+			});
+		}
+	}
+
+	private void updateToolTip() {
 		final Point2D envMouse = wormhole.getEnvPoint(new Point2D.Double(mousex, mousey));
-		dist = Math.hypot(mousex - nearestx, mousey - nearesty);
 		final StringBuilder sb = new StringBuilder();
 		sb.append('[');
 		sb.append(envMouse.getX());
@@ -429,15 +998,109 @@ public abstract class Abstract2DDisplay<T> extends JPanel implements SwingOutput
 		setToolTipText(sb.toString());
 	}
 
+	/**
+	 * Finds the node closest to the mouse among the visible ones, using the
+	 * spatial index of the last painted snapshot. No visible node is farther
+	 * from the mouse than the farthest corner of the view, which bounds the
+	 * search. Must be called from the thread consuming the snapshots.
+	 */
+	private void updateNearest(final IWormhole2D camera, final int x, final int y) {
+		INode<T> found = null;
+		Point at = null;
+		final EnvironmentSnapshot<T> frame = lastFrame;
+		if (frame != null && effectStack != null && !effectStack.isEmpty()) {
+			final Point2D envMouse = camera.getEnvPoint(new Point2D.Double(x, y));
+			final Dimension2D viewSize = camera.getViewSize();
+			for (int corner = 0; corner < VIEW_CORNERS; corner++) {
+				corners[2 * corner] = (corner & 1) == 0 ? 0 : viewSize.getWidth();
+				corners[2 * corner + 1] = (corner & 2) == 0 ? 0 : viewSize.getHeight();
+			}
+			camera.getEnvPoints(corners, 0, corners, 0, VIEW_CORNERS);
+			double reach = 0;
+			for (int corner = 0; corner < VIEW_CORNERS; corner++) {
+				reach = Math.max(reach, envMouse.distance(corners[2 * corner], corners[2 * corner + 1]));
+			}
+			final int i = frame.getSpatialIndex().nearest(envMouse.getX(), envMouse.getY(), reach,
+					j -> camera.isInsideView(camera.getViewPoint(positionOf(frame, j))));
+			if (i >= 0) {
+				final Point2D vp = camera.getViewPoint(positionOf(frame, i));
+				found = frame.getNode(i);
+				at = new Point((int) vp.getX(), (int) vp.getY());
+			}
+		}
+		marker = at;
+		nearest = found;
+	}
+
+	/**
+	 * @return where a node of a snapshot is drawn, accounting for the
+	 *         interpolation. Must be called from the thread consuming the
+	 *         snapshots
+	 */
+	private Point2D positionOf(final EnvironmentSnapshot<T> frame, final int i) {
+		final PositionInterpolator<T> motion = interpolator;
+		if (motion != null && motion.follows(frame)) {
+			return new Point2D.Double(motion.getX(i), motion.getY(i));
+		}
+		return new Point2D.Double(frame.getX(i), frame.getY(i));
+	}
+
 	@Override
 	public void setDrawLinks(final boolean b) {
 		paintLinks = b;
+		sampler.setCollectLinks(b);
+		/*
+		 * A paused simulation takes no steps: sample its state again, now
+		 * with the links.
+		 */
+		if (!firstTime) {
+			requestSample();
+		}
 		updateView();
 	}
 
+	/**
+	 * The stack is copied: the copy is published to the threads drawing, and
+	 * each frame draws copies of its effects, taken when the frame is
+	 * requested.
+	 */
 	@Override
 	public void setEffectStack(final List<Effect> l) {
-		effectStack = l;
+		if (l != null) {
+			for (final Effect effect : l) {
+				effect.setUpdateListener(this::effectUpdated);
+			}
+		}
+		effectStack = l == null ? null : Collections.unmodifiableList(new ArrayList<>(l));
+	}
+
+	/*
+	 * An effect changed on its own, and may need new columns: sample again
+	 * even if the simulation is paused.
+	 */
+	private void effectUpdated() {
+		if (!firstTime) {
+			requestSample();
+		}
+		updateView();
+	}
+
+	/*
+	 * Copies the effects as configured now. To be called from the event
+	 * dispatch thread, the one editing them.
+	 */
+	private List<Effect> snapshotEffects() {
+		final List<Effect> stack = effectStack;
+		if (stack == null) {
+			return null;
+		}
+		final List<Effect> copies = new ArrayList<>(stack.size());
+		for (final Effect effect : stack) {
+			copies.add(effect.snapshot());
+		}
+		final List<Effect> scene = Collections.unmodifiableList(copies);
+		sceneEffects = scene;
+		return scene;
 	}
 
 	/**
@@ -446,6 +1109,113 @@ public abstract class Abstract2DDisplay<T> extends JPanel implements SwingOutput
 	 */
 	protected void setEnv(final IEnvironment<T> environment) {
 		this.env = environment;
+		obstaclesLayer.invalidate();
+		linksLayer.invalidate();
+	}
+
+	/**
+	 * @param maxLinks
+	 *            the maximum number of links drawn per frame. If more links
+	 *            are visible, a uniform sample of them is drawn.
+	 */
+	public void setLinksBudget(final int maxLinks) {
+		linksRenderer.setBudget(maxLinks);
+		linksLayer.invalidate();
+	}
+
+	/**
+	 * @param period
+	 *            number of redraws between two full scans of the environment
+	 *            when the incremental updates are enabled. Values lower than
+	 *            one disable the periodic full scan.
+	 */
+	public void setFullResyncPeriod(final int period) {
+		sampler.setFullResyncPeriod(period);
+	}
+
+	/**
+	 * If enabled, each redraw only refreshes the nodes whose reactions were
+	 * executed since the previous one (and the neighborhoods affected by
+	 * their movement) instead of scanning the whole environment.
+	 * 
+	 * @param incremental
+	 *            true to enable the incremental updates
+	 */
+	public void setIncrementalUpdates(final boolean incremental) {
+		sampler.setIncremental(incremental);
+	}
+
+	/**
+	 * @param interpolate
+	 *            if true, nodes are moved smoothly between two consecutive
+	 *            snapshots, lagging at most one snapshot behind the
+	 *            simulation. Frames must be requested while
+	 *            {@link #isMoving()} to see the motion
+	 */
+	public void setInterpolation(final boolean interpolate) {
+		interpolator = interpolate ? new PositionInterpolator<>() : null;
+		updateView();
+	}
+
+	/**
+	 * @param caching
+	 *            if true, fixed obstacles and, while no node moves, links are
+	 *            drawn on cached layers, repainted only when they or the
+	 *            camera change
+	 */
+	public void setLayerCaching(final boolean caching) {
+		layerCaching = caching;
+		obstaclesLayer.invalidate();
+		linksLayer.invalidate();
+		updateView();
+	}
+
+	/**
+	 * @param lod
+	 *            if true, when the visible nodes are denser than a threshold
+	 *            they are aggregated in screen cells, each one drawn as a
+	 *            single marker with the mean color of its nodes
+	 */
+	public void setLevelOfDetail(final boolean lod) {
+		levelOfDetail = lod;
+		updateView();
+	}
+
+	/**
+	 * @param millis
+	 *            the time a pass of a progressive frame may take, in
+	 *            milliseconds. See {@link #setProgressiveRendering(boolean)}
+	 */
+	public void setPassBudget(final long millis) {
+		if (millis <= 0) {
+			throw new IllegalArgumentException("The pass budget must be positive, got " + millis);
+		}
+		passBudget = TimeUnit.MILLISECONDS.toNanos(millis);
+	}
+
+	/**
+	 * @param pointCloud
+	 *            if true, frames with a huge number of nodes are drawn
+	 *            writing the image pixels directly, by the effects able to.
+	 *            Shapes are not antialiased, and other effects keep using
+	 *            Java2D
+	 */
+	public void setPointCloudRendering(final boolean pointCloud) {
+		pointCloudRendering = pointCloud;
+		updateView();
+	}
+
+	/**
+	 * @param progressive
+	 *            if true, and the nodes took longer than a pass to draw in the
+	 *            last frame, the next frame draws them in several passes,
+	 *            starting from the hooked node or the center of the view, and
+	 *            showing the partial frame with its progress after each pass.
+	 *            Only frames drawn offscreen can be progressive
+	 */
+	public void setProgressiveRendering(final boolean progressive) {
+		progressiveRendering = progressive;
+		updateView();
 	}
 
 	@Override
@@ -458,6 +1228,28 @@ public abstract class Abstract2DDisplay<T> extends JPanel implements SwingOutput
 		st = step;
 	}
 
+	/**
+	 * @param fps
+	 *            the maximum number of snapshots per second the simulation
+	 *            thread takes for this display. Fewer are taken if drawing or
+	 *            sampling cannot keep up. The step set through
+	 *            {@link #setStep(int)} further filters the candidate steps
+	 */
+	public void setTargetFrameRate(final double fps) {
+		governor.setTargetFrameRate(fps);
+	}
+
+	/**
+	 * @param tiled
+	 *            if true, frames with many nodes are drawn in tiles by all
+	 *            the available cores. Effects not supporting parallel batches
+	 *            are always drawn by a single thread
+	 */
+	public void setTiledRendering(final boolean tiled) {
+		tiledRendering = tiled;
+		updateView();
+	}
+
 	/**
 	 * Lets child-classes change the wormhole.
 	 * 
@@ -482,6 +1274,9 @@ public abstract class Abstract2DDisplay<T> extends JPanel implements SwingOutput
 
 	@Override
 	public void stepDone(final IEnvironment<T> environment, final IReaction<T> r, final ITime time, final long step) {
+		synchronized (sampler) {
+			sampler.reactionExecuted(r);
+		}
 		if (firstTime) {
 			env = environment;
 			mutex.acquireUninterruptibly();
@@ -489,55 +1284,183 @@ public abstract class Abstract2DDisplay<T> extends JPanel implements SwingOutput
 			 * Thread safety: need to double-check 
 			 */
 			if (firstTime) {
+				simulation = Simulation.fromEnvironment(environment);
 				initAll(r, time, step);
-				lasttime = -TIME_STEP;
 				firstTime = false;
-				timeInit = System.currentTimeMillis();
 				updateView();
 			}
 			mutex.release();
-		} else if (st < 1 || step % st == 0) {
-			if (isRealTime()) {
-				if (lasttime + TIME_STEP > time.toDouble()) {
-					return;
-				}
-				final long timeSimulated = (long) (time.toDouble() * MS_PER_SECOND);
-				if (timeSimulated == 0) {
-					timeInit = System.currentTimeMillis();
+		} else {
+			final long now = System.nanoTime();
+			if ((st < 1 || step % st == 0) && governor.shouldSample(now, sampler.hasFreshSnapshot())) {
+				synchronized (sampler) {
+					unsampled.set(false);
+					update();
 				}
-				final long timePassed = System.currentTimeMillis() - timeInit;
-				if (timePassed - timeSimulated > PAUSE_DETECTION_THRESHOLD) {
-					timeInit = timeInit + timePassed - timeSimulated;
+				governor.sampled(now, System.nanoTime());
+			} else if (isStopping()) {
+				/*
+				 * A pause or a stop has been requested: this is likely the last
+				 * step before it, so sample it while on the simulation thread.
+				 */
+				synchronized (sampler) {
+					unsampled.set(false);
+					update();
 				}
-				if (timeSimulated > timePassed) {
-					try {
-						Thread.sleep(Math.min(timeSimulated - timePassed, MS_PER_SECOND / DEFAULT_FRAME_RATE));
-					} catch (final InterruptedException e) {
-						L.warn("Damn spurious wakeups.");
-						L.error(e);
-					}
+			} else {
+				requestSample();
+			}
+		}
+	}
+
+	private boolean isStopping() {
+		final ISimulation<T> sim = simulation;
+		return sim != null && sim.getStatus() != Status.RUNNING;
+	}
+
+	/*
+	 * Makes sure the current state gets sampled: by the next step taken,
+	 * or by the trailing timer if the simulation is paused without taking
+	 * another one.
+	 */
+	private void requestSample() {
+		if (!unsampled.getAndSet(true)) {
+			SwingUtilities.invokeLater(trailingTimer::start);
+		}
+	}
+
+	/*
+	 * Event dispatch thread. The simulation thread samples the step it
+	 * takes once a pause is requested, but a pause requested right after
+	 * its check leaves the last step unsampled, with the simulation thread
+	 * parked: this samples it, once the simulation is not running and its
+	 * step count did not change over a whole check period, so that a step
+	 * still in progress is not read while being executed.
+	 */
+	private void trailingSample() {
+		final ISimulation<T> sim = firstTime ? null : simulation;
+		if (sim == null || !unsampled.get()) {
+			trailingTimer.stop();
+			trailingStep = NO_STEP;
+			unsampled.set(false);
+		} else if (sim.getStatus() == Status.RUNNING) {
+			trailingStep = NO_STEP;
+		} else if (sim.getStep() != trailingStep) {
+			trailingStep = sim.getStep();
+		} else {
+			trailingTimer.stop();
+			trailingStep = NO_STEP;
+			synchronized (sampler) {
+				if (unsampled.getAndSet(false)) {
+					update();
 				}
 			}
-			update(time);
 		}
 	}
 
-	private void update(final ITime time) {
-		mutex.acquireUninterruptibly();
+	private void update() {
 		if (envHasMobileObstacles(env)) {
 			loadObstacles();
 		}
-		lasttime = time.toDouble();
 		computeNodes();
-		mutex.release();
 		updateView();
 	}
 
+	/**
+	 * Also asks for a new frame if this display {@link #rendersOffscreen()
+	 * renders offscreen}, so that the effects are drawn again as currently
+	 * configured.
+	 */
+	@Override
+	public void repaint() {
+		super.repaint();
+		if (offscreen != null) {
+			updateView();
+		}
+	}
+
 	/**
 	 * Actually repaints the view.
 	 */
 	protected void updateView() {
-		repaint();
+		if (offscreen == null) {
+			repaint();
+		} else if (SwingUtilities.isEventDispatchThread()) {
+			requestFrame();
+		} else if (!framePosted.getAndSet(true)) {
+			SwingUtilities.invokeLater(() -> {
+				framePosted.set(false);
+				requestFrame();
+			});
+		}
+	}
+
+	/**
+	 * @return true if this display draws on a separate thread, and the event
+	 *         dispatch thread only copies the completed frames. It must
+	 *         always return the same value
+	 */
+	protected boolean rendersOffscreen() {
+		return false;
+	}
+
+	/**
+	 * Asks the render thread for a frame with the current camera. To be
+	 * called from the event dispatch thread, the only one changing the
+	 * wormhole.
+	 */
+	private void requestFrame() {
+		if (wormhole == null || offscreen == null || !isVisible()) {
+			return;
+		}
+		final Point2D hp = hookedPosition;
+		if (hooked.isPresent() && hp != null) {
+			final Point2D vp = wormhole.getViewPoint(hp);
+			if (vp.distance(getCenter()) > FREEDOM_RADIUS) {
+				wormhole.setDeltaViewPosition(NSEAlg2DHelper.variation(getCenter(), vp));
+			}
+		}
+		offscreen.requestFrame(new Scene(copyCamera(), snapshotEffects()), getWidth(), getHeight());
+	}
+
+	/**
+	 * @return a copy of the wormhole the render thread can use while the
+	 *         event dispatch thread keeps changing the original
+	 */
+	private IWormhole2D copyCamera() {
+		return wormhole instanceof NSEWormhole ? new NSEWormhole((NSEWormhole) wormhole) : wormhole;
+	}
+
+	/*
+	 * Newer snapshots and cameras do not interrupt a progressive frame, or
+	 * frames requested more often than a pass would never get past the
+	 * first one: the frame is completed with its own scene and published as
+	 * drawn with it, and then the latest request is drawn. Only vector
+	 * outputs and resizing abandon it.
+	 */
+	private boolean paintFrame(final Graphics2D g, final BufferedImage raster, final Scene scene) {
+		final Progress current = progress;
+		if (current != null) {
+			if (raster != null && raster.getWidth() == progressImage.getWidth() && raster.getHeight() == progressImage.getHeight()) {
+				final long passStart = System.nanoTime();
+				final boolean complete = drawPass(g, current);
+				if (current.scene != scene) {
+					offscreen.publishAs(current.scene);
+				}
+				current.cost += System.nanoTime() - passStart;
+				if (complete) {
+					governor.rendered(current.cost);
+				}
+				return complete && current.scene == scene;
+			}
+			abandon(current);
+		}
+		final Dimension2D size = scene.camera.getViewSize();
+		g.setColor(getBackground());
+		g.fillRect(0, 0, (int) Math.ceil(size.getWidth()), (int) Math.ceil(size.getHeight()));
+		drawScene(g, scene, raster);
+		lastScene = scene;
+		return progress == null;
 	}
 	
 	private class MouseManager implements MouseInputListener, MouseWheelListener, MouseMotionListener {
@@ -545,15 +1468,20 @@ public abstract class Abstract2DDisplay<T> extends JPanel implements SwingOutput
 		@Override
 		public void mouseClicked(final MouseEvent e) {
 			setDist(e.getX(), e.getY());
-			if (nearest != null && SwingUtilities.isLeftMouseButton(e) && e.getClickCount() == 2) {
-				final NodeTracker<T> monitor = new NodeTracker<>(nearest, env);
-				AlchemistSwingUI.addTab(monitor);
-				Simulation.addOutputMonitor(env, monitor);
-			}
-			if (nearest != null && SwingUtilities.isMiddleMouseButton(e)) {
-				hooked = hooked.isPresent() ? Optional.empty() : Optional.of(nearest);
-			}
-			updateView();
+			final boolean track = SwingUtilities.isLeftMouseButton(e) && e.getClickCount() == 2;
+			final boolean hook = SwingUtilities.isMiddleMouseButton(e);
+			pick(e.getX(), e.getY(), picked -> {
+				if (picked != null && track) {
+					final NodeTracker<T> monitor = new NodeTracker<>(picked, env);
+					AlchemistSwingUI.addTab(monitor);
+					Simulation.addOutputMonitor(env, monitor);
+				}
+				if (picked != null && hook) {
+					hooked = hooked.isPresent() ? Optional.empty() : Optional.of(picked);
+					hookedPosition = null;
+				}
+				updateView();
+			});
 		}
 
 		@Override
@@ -571,19 +1499,20 @@ public abstract class Abstract2DDisplay<T> extends JPanel implements SwingOutput
 				wormhole.rotateAroundPoint(getCenter(), angleManager.getAngle());
 			}
 			mouseVelocity.setCurrentPosition(e.getPoint());
-			updateView();
+			navigated();
 		}
 
+		/*
+		 * Hovering only moves the highlight: setDist repaints it if needed.
+		 */
 		@Override
 		public void mouseEntered(final MouseEvent e) {
 			setDist(e.getX(), e.getY());
-			updateView();
 		}
 
 		@Override
 		public void mouseExited(final MouseEvent e) {
 			setDist(e.getX(), e.getY());
-			updateView();
 		}
 
 		@Override
@@ -592,7 +1521,6 @@ public abstract class Abstract2DDisplay<T> extends JPanel implements SwingOutput
 			if (mouseVelocity != null) {
 				mouseVelocity.setCurrentPosition(e.getPoint());
 			}
-			updateView();
 		}
 
 		@Override
@@ -615,12 +1543,107 @@ public abstract class Abstract2DDisplay<T> extends JPanel implements SwingOutput
 				zoomManager.dec(e.getWheelRotation());
 				wormhole.zoomOnPoint(e.getPoint(), zoomManager.getZoom());
 				setDist(e.getX(), e.getY());
-				updateView();
+				navigated();
 			}
 		}
 
 	}
 	
+	/**
+	 * What a frame is drawn with: copies of the camera and of the effects,
+	 * taken on the event dispatch thread when the frame is requested.
+	 */
+	private static final class Scene {
+		private final IWormhole2D camera;
+		private final List<Effect> effects;
+
+		private Scene(final IWormhole2D cam, final List<Effect> stack) {
+			camera = cam;
+			effects = stack;
+		}
+	}
+
+	/**
+	 * A frame drawn in several passes, and how far it got.
+	 */
+	private final class Progress {
+		private final Scene scene;
+		private final EnvironmentSnapshot<T> frame;
+		private final int total;
+		private final Graphics2D graphics;
+		private int next;
+		private long cost, nodesCost;
+
+		private Progress(final Scene drawn, final EnvironmentSnapshot<T> snapshot, final int count, final Graphics2D g) {
+			scene = drawn;
+			frame = snapshot;
+			total = count;
+			graphics = g;
+		}
+	}
+
+	/**
+	 * A range of visible, backed by the display buffers.
+	 */
+	private final class VisibleNodes implements NodeBatch {
+		private final EnvironmentSnapshot<T> frame;
+		private final int start, size;
+
+		private VisibleNodes(final EnvironmentSnapshot<T> snapshot, final int from, final int count) {
+			frame = snapshot;
+			start = from;
+			size = count;
+		}
+
+		@Override
+		public INode<?> getNode(final int k) {
+			return frame.getNode(visible[start + k]);
+		}
+
+		@Override
+		public int getSnapshotIndex(final int k) {
+			return visible[start + k];
+		}
+
+		@Override
+		public boolean isCaptured(final NodeColumn column) {
+			return column.isFlag() ? frame.getFlags(column) != null : frame.getValues(column) != null;
+		}
+
+		@Override
+		public IntPredicate getFlags(final NodeColumn column) {
+			final IntPredicate flags = frame.getFlags(column);
+			return flags == null ? NodeBatch.super.getFlags(column) : k -> flags.test(visible[start + k]);
+		}
+
+		@Override
+		public IntToDoubleFunction getValues(final NodeColumn column) {
+			final IntToDoubleFunction values = frame.getValues(column);
+			return values == null ? NodeBatch.super.getValues(column) : k -> values.applyAsDouble(visible[start + k]);
+		}
+
+		@Override
+		public ValueDistribution getDistribution(final NodeColumn column) {
+			final ValueDistribution distribution = frame.getDistribution(column);
+			return distribution == null ? NodeBatch.super.getDistribution(column) : distribution;
+		}
+
+		@Override
+		public double getViewX(final int k) {
+			return viewCoords[2 * (start + k)];
+		}
+
+		@Override
+		public double getViewY(final int k) {
+			return viewCoords[2 * (start + k) + 1];
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+	}
+
 	private class ComponentManager implements ComponentListener {
 		@Override
 		public void componentHidden(final ComponentEvent e) {
@@ -8,7 +8,13 @@
  */
 package it.unibo.alchemist.boundary.monitors;
 
+import javax.swing.Timer;
+
 /**
+ * A display for continuous motion: the environment is sampled a few times per
+ * second, and the frames in between are drawn moving the nodes smoothly from
+ * a snapshot to the next one.
+ * 
  * @author Danilo Pianini
  * 
  * @param <T>
@@ -16,6 +22,61 @@ package it.unibo.alchemist.boundary.monitors;
  */
 public class Continuous2DDisplay<T> extends Generic2DDisplay<T> {
 
+	/**
+	 * Default number of snapshots taken per second.
+	 */
+	public static final double DEFAULT_SAMPLING_RATE = 5;
+	/**
+	 * Default number of frames drawn per second while nodes are moving.
+	 */
+	public static final int DEFAULT_ANIMATION_RATE = 60;
+	private static final int MS_PER_SECOND = 1000;
 	private static final long serialVersionUID = -8639779509640696726L;
 
+	private final transient Timer animation = new Timer(MS_PER_SECOND / DEFAULT_ANIMATION_RATE, e -> {
+		if (isMoving()) {
+			updateView();
+		}
+	});
+
+	/**
+	 * @see Generic2DDisplay#Generic2DDisplay()
+	 */
+	public Continuous2DDisplay() {
+		super();
+		init();
+	}
+
+	/**
+	 * @param step
+	 *            {@link Generic2DDisplay#Generic2DDisplay(int)}
+	 */
+	public Continuous2DDisplay(final int step) {
+		super(step);
+		init();
+	}
+
+	private void init() {
+		setTargetFrameRate(DEFAULT_SAMPLING_RATE);
+		setInterpolation(true);
+		animation.start();
+	}
+
+	/**
+	 * @param fps
+	 *            how many frames per second are drawn while nodes are moving
+	 */
+	public void setAnimationRate(final int fps) {
+		if (fps <= 0) {
+			throw new IllegalArgumentException("The frame rate must be positive, got " + fps);
+		}
+		animation.setDelay(MS_PER_SECOND / fps);
+	}
+
+	@Override
+	public void dispose() {
+		animation.stop();
+		super.dispose();
+	}
+
 }
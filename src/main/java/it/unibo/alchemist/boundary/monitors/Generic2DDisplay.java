@@ -57,6 +57,17 @@ public class Generic2DDisplay<T> extends Abstract2DDisplay<T> {
 		getZoomManager().setZoom(getWormhole().getZoom());
 	}
 
+	/**
+	 * Frames are drawn on a dedicated thread: painting only copies the last
+	 * completed one.
+	 * 
+	 * @return true
+	 */
+	@Override
+	protected boolean rendersOffscreen() {
+		return true;
+	}
+
 	@Override
 	protected void paintComponent(final Graphics g) {
 		super.paintComponent(g);
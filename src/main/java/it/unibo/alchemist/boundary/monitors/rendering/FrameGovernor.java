@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2010-2015, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.monitors.rendering;
+
+/**
+ * Decides, in wall clock time, when the simulation thread should take a new
+ * snapshot for a display. Snapshots are taken at most at the target frame
+ * rate, but never faster than the display can draw them, and never so often
+ * that sampling takes more than a small share of the simulation thread time.
+ * While a snapshot is waiting to be drawn, no other one is taken, unless the
+ * display stopped drawing for too long.
+ * 
+ * All the times are in nanoseconds, as returned by {@link System#nanoTime()}.
+ * The sampling methods must be called by the simulation thread, the
+ * rendering ones by the thread drawing the snapshots.
+ */
+public final class FrameGovernor {
+
+	/**
+	 * The default target frame rate.
+	 */
+	public static final double DEFAULT_FRAME_RATE = 30;
+	private static final double NANOS_PER_SECOND = 1e9;
+	/*
+	 * Weight of the latest measure in the moving averages.
+	 */
+	private static final double SMOOTHING = 0.2;
+	/*
+	 * Maximum fraction of the simulation thread time spent sampling.
+	 */
+	private static final double MAX_SAMPLING_SHARE = 0.1;
+	private static final long STALE_TIMEOUT = (long) NANOS_PER_SECOND;
+
+	private volatile long period = (long) (NANOS_PER_SECOND / DEFAULT_FRAME_RATE);
+	private volatile double renderCost;
+	private double sampleCost;
+	private long lastSample;
+	private long nextSample;
+	private volatile boolean reset = true;
+
+	/**
+	 * Simulation thread side.
+	 * 
+	 * @param now
+	 *            the current time
+	 * @param framePending
+	 *            true if the previous snapshot has not been drawn yet
+	 * @return true if a snapshot should be taken now
+	 */
+	public boolean shouldSample(final long now, final boolean framePending) {
+		if (reset) {
+			return true;
+		}
+		if (now - nextSample < 0) {
+			return false;
+		}
+		return !framePending || now - lastSample > STALE_TIMEOUT;
+	}
+
+	/**
+	 * Simulation thread side: records that a snapshot has been taken.
+	 * 
+	 * @param start
+	 *            when sampling started
+	 * @param end
+	 *            when sampling ended
+	 */
+	public void sampled(final long start, final long end) {
+		sampleCost = average(sampleCost, end - start);
+		lastSample = end;
+		final double interval = Math.max(period, Math.max(renderCost, sampleCost / MAX_SAMPLING_SHARE));
+		nextSample = start + (long) interval;
+		reset = false;
+	}
+
+	/**
+	 * Render thread side: records that a snapshot has been drawn.
+	 * 
+	 * @param cost
+	 *            how long drawing took
+	 */
+	public void rendered(final long cost) {
+		renderCost = average(renderCost, cost);
+	}
+
+	/**
+	 * Lets the next snapshot be taken immediately.
+	 */
+	public void reset() {
+		reset = true;
+	}
+
+	/**
+	 * @return the average time spent drawing a frame
+	 */
+	public double getRenderCost() {
+		return renderCost;
+	}
+
+	/**
+	 * @return the average time spent taking a snapshot
+	 */
+	public double getSampleCost() {
+		return sampleCost;
+	}
+
+	/**
+	 * @return the target frame rate
+	 */
+	public double getTargetFrameRate() {
+		return NANOS_PER_SECOND / period;
+	}
+
+	/**
+	 * @param fps
+	 *            the maximum number of snapshots per second
+	 */
+	public void setTargetFrameRate(final double fps) {
+		if (!(fps > 0)) {
+			throw new IllegalArgumentException("The frame rate must be positive, got " + fps);
+		}
+		period = (long) (NANOS_PER_SECOND / fps);
+	}
+
+	private static double average(final double previous, final double sample) {
+		return previous == 0 ? sample : previous + SMOOTHING * (sample - previous);
+	}
+
+}
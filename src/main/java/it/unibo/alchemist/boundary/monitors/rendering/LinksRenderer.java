@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2010-2015, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.monitors.rendering;
+
+import it.unibo.alchemist.boundary.monitors.snapshots.EnvironmentSnapshot;
+
+import java.awt.Graphics2D;
+import java.awt.geom.Path2D;
+
+/**
+ * Draws the links of an {@link EnvironmentSnapshot}. Each undirected link is
+ * drawn once, links whose bounding box does not intersect the view are
+ * skipped, and the remaining ones are batched into large paths. If more
+ * links than the budget are visible, a uniform sample of them is drawn.
+ * 
+ * Instances are not thread safe.
+ */
+public final class LinksRenderer {
+
+	/**
+	 * Default maximum number of links drawn per frame.
+	 */
+	public static final int DEFAULT_BUDGET = 200000;
+	private static final int SEGMENTS_PER_BATCH = 4096;
+
+	private final Path2D.Float path = new Path2D.Float(Path2D.WIND_NON_ZERO, SEGMENTS_PER_BATCH * 2);
+	private int budget = DEFAULT_BUDGET;
+
+	/**
+	 * Draws the links with the current color and stroke.
+	 * 
+	 * @param g
+	 *            the graphics
+	 * @param frame
+	 *            the snapshot, with links
+	 * @param view
+	 *            the view coordinates of the snapshot nodes, interleaved
+	 *            (x0, y0, x1, y1...)
+	 * @param width
+	 *            the view width
+	 * @param height
+	 *            the view height
+	 */
+	public void draw(final Graphics2D g, final EnvironmentSnapshot<?> frame, final double[] view, final double width, final double height) {
+		if (!frame.hasLinks()) {
+			return;
+		}
+		final int size = frame.size();
+		/*
+		 * Counting the visible links costs a second pass: do it only if the
+		 * budget may actually be exceeded. Each link drawn is stored at least
+		 * once, twice if both ends list it: the stored entries bound the
+		 * links drawn whether or not the neighborhoods are symmetric.
+		 */
+		long stride = 1;
+		if (frame.getLinkOffset(size) > budget) {
+			final long visible = forEachVisible(null, frame, view, width, height, 1);
+			stride = (visible + budget - 1) / budget;
+		}
+		forEachVisible(g, frame, view, width, height, Math.max(1, stride));
+	}
+
+	/*
+	 * If g is null, counts the visible links. Otherwise, draws one visible
+	 * link every stride.
+	 */
+	private long forEachVisible(final Graphics2D g, final EnvironmentSnapshot<?> frame, final double[] view, final double width, final double height, final long stride) {
+		long visible = 0;
+		int batched = 0;
+		path.reset();
+		for (int i = 0; i < frame.size(); i++) {
+			final double x1 = view[2 * i];
+			final double y1 = view[2 * i + 1];
+			for (int k = frame.getLinkOffset(i); k < frame.getLinkOffset(i + 1); k++) {
+				final int j = frame.getLinkTarget(k);
+				if (j > i || !isLinked(frame, j, i)) {
+					final double x2 = view[2 * j];
+					final double y2 = view[2 * j + 1];
+					if (Math.max(x1, x2) >= 0 && Math.min(x1, x2) <= width && Math.max(y1, y2) >= 0 && Math.min(y1, y2) <= height) {
+						if (g != null && visible % stride == 0) {
+							path.moveTo(x1, y1);
+							path.lineTo(x2, y2);
+							batched++;
+							if (batched == SEGMENTS_PER_BATCH) {
+								g.draw(path);
+								path.reset();
+								batched = 0;
+							}
+						}
+						visible++;
+					}
+				}
+			}
+		}
+		if (batched > 0) {
+			g.draw(path);
+			path.reset();
+		}
+		return visible;
+	}
+
+	private static boolean isLinked(final EnvironmentSnapshot<?> frame, final int from, final int to) {
+		final int start = frame.getLinkOffset(from);
+		final int end = frame.getLinkOffset(from + 1);
+		if (start == end) {
+			return false;
+		}
+		/*
+		 * Rows are sorted: binary search.
+		 */
+		int low = start;
+		int high = end - 1;
+		while (low <= high) {
+			final int mid = (low + high) >>> 1;
+			final int target = frame.getLinkTarget(mid);
+			if (target < to) {
+				low = mid + 1;
+			} else if (target > to) {
+				high = mid - 1;
+			} else {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return the maximum number of links drawn per frame
+	 */
+	public int getBudget() {
+		return budget;
+	}
+
+	/**
+	 * @param maxLinks
+	 *            the maximum number of links drawn per frame. If more links
+	 *            are visible, a uniform sample is drawn.
+	 */
+	public void setBudget(final int maxLinks) {
+		budget = Math.max(1, maxLinks);
+	}
+
+}
@@ -0,0 +1,316 @@
+/*
+ * Copyright (C) 2010-2015, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.monitors.rendering;
+
+import it.unibo.alchemist.boundary.gui.effects.Effect;
+import it.unibo.alchemist.boundary.gui.effects.NodeBatch;
+import it.unibo.alchemist.boundary.gui.effects.NodeColumn;
+import it.unibo.alchemist.boundary.gui.effects.PixelCanvas;
+import it.unibo.alchemist.boundary.gui.effects.ValueDistribution;
+import it.unibo.alchemist.model.interfaces.INode;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntPredicate;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * Level of detail for views too crowded to draw nodes one by one. The view
+ * is split in square cells, and each cell containing nodes is drawn as a
+ * single marker, with the mean color the effects would draw its nodes with.
+ * Markers of cells with few nodes are smaller, so that sparse areas still
+ * look sparse. Effects that cannot be summarized by a color are applied to
+ * one node per cell, drawn at the centroid of the cell nodes. Either way, the
+ * cost of a frame is bounded by the view size, not by the number of nodes.
+ * 
+ * Aggregation starts when the nodes per pixel exceed a density, and stops
+ * when they fall below half of it, so that the view does not flicker between
+ * the two modes while zooming around the threshold.
+ * 
+ * Instances are not thread safe.
+ */
+public final class NodeAggregator {
+
+	/**
+	 * Default side of a cell, in pixels.
+	 */
+	public static final int DEFAULT_CELL_SIZE = 4;
+	/**
+	 * Default nodes per pixel above which nodes are aggregated.
+	 */
+	public static final double DEFAULT_DENSITY = 0.5;
+	private static final int ALPHA_SHIFT = 24;
+	private static final int RED_SHIFT = 16;
+	private static final int GREEN_SHIFT = 8;
+	private static final int CHANNEL_MASK = 0xFF;
+
+	private final int cellSize;
+	private final double density;
+	private boolean aggregating;
+	private int cols;
+	private int[] cellOf = new int[0];
+	private int[] colors = new int[0];
+	private int[] topColors = new int[0];
+	private int[] counts = new int[0];
+	private int[] first = new int[0];
+	private int[] colored = new int[0];
+	private double[] sumX = new double[0];
+	private double[] sumY = new double[0];
+	private long[] sumARGB = new long[0];
+	private int[] occupied = new int[0];
+	private int occupiedCount;
+
+	/**
+	 * Builds an aggregator with the default cell size and density.
+	 */
+	public NodeAggregator() {
+		this(DEFAULT_CELL_SIZE, DEFAULT_DENSITY);
+	}
+
+	/**
+	 * @param cellSize
+	 *            the side of a cell, in pixels
+	 * @param density
+	 *            the nodes per pixel above which nodes are aggregated
+	 */
+	public NodeAggregator(final int cellSize, final double density) {
+		if (cellSize < 1 || !(density > 0)) {
+			throw new IllegalArgumentException("Invalid cell size " + cellSize + " or density " + density);
+		}
+		this.cellSize = cellSize;
+		this.density = density;
+	}
+
+	/**
+	 * @param nodes
+	 *            the number of nodes to draw
+	 * @param width
+	 *            the view width
+	 * @param height
+	 *            the view height
+	 * @return true if the nodes are dense enough to be aggregated
+	 */
+	public boolean shouldAggregate(final int nodes, final double width, final double height) {
+		final double perPixel = nodes / Math.max(1, width * height);
+		aggregating = perPixel > (aggregating ? density / 2 : density);
+		return aggregating;
+	}
+
+	/**
+	 * Draws a batch of nodes, aggregated by cell.
+	 * 
+	 * @param g
+	 *            the destination
+	 * @param canvas
+	 *            the pixels of the destination, or null to draw the markers
+	 *            through g
+	 * @param width
+	 *            the view width
+	 * @param height
+	 *            the view height
+	 * @param batch
+	 *            the nodes
+	 * @param effects
+	 *            the effects to apply, in order
+	 */
+	public void draw(final Graphics2D g, final PixelCanvas canvas, final int width, final int height, final NodeBatch batch, final List<Effect> effects) {
+		if (width <= 0 || height <= 0) {
+			return;
+		}
+		bin(width, height, batch);
+		if (topColors.length < batch.size()) {
+			topColors = new int[batch.size()];
+			colors = new int[batch.size()];
+		}
+		Arrays.fill(topColors, 0, batch.size(), 0);
+		boolean pending = false;
+		NodeBatch samples = null;
+		for (final Effect effect : effects) {
+			if (effect.sampleColors(batch, colors)) {
+				/*
+				 * What is visible of a node is the last effect drawing it.
+				 */
+				for (int k = 0; k < batch.size(); k++) {
+					if (colors[k] >>> ALPHA_SHIFT != 0) {
+						topColors[k] = colors[k];
+					}
+				}
+				pending = true;
+			} else {
+				/*
+				 * Keep the stack order: the markers of the effects below are
+				 * drawn first.
+				 */
+				if (pending) {
+					drawMarkers(g, canvas, batch.size());
+					pending = false;
+				}
+				if (samples == null) {
+					samples = new Representatives(batch);
+				}
+				effect.apply(g, samples);
+			}
+		}
+		if (pending) {
+			drawMarkers(g, canvas, batch.size());
+		}
+	}
+
+	private void bin(final int width, final int height, final NodeBatch batch) {
+		cols = (width + cellSize - 1) / cellSize;
+		final int rows = (height + cellSize - 1) / cellSize;
+		final int cells = cols * rows;
+		if (counts.length < cells) {
+			counts = new int[cells];
+			first = new int[cells];
+			colored = new int[cells];
+			sumX = new double[cells];
+			sumY = new double[cells];
+			sumARGB = new long[4 * cells];
+			occupied = new int[cells];
+		}
+		if (cellOf.length < batch.size()) {
+			cellOf = new int[batch.size()];
+		}
+		/*
+		 * Only the cells used in the previous frame need to be cleared.
+		 */
+		for (int c = 0; c < occupiedCount; c++) {
+			final int cell = occupied[c];
+			if (cell < cells) {
+				counts[cell] = 0;
+			}
+		}
+		occupiedCount = 0;
+		for (int k = 0; k < batch.size(); k++) {
+			final double x = batch.getViewX(k);
+			final double y = batch.getViewY(k);
+			if (x >= 0 && x < width && y >= 0 && y < height) {
+				final int cell = (int) y / cellSize * cols + (int) x / cellSize;
+				cellOf[k] = cell;
+				if (counts[cell]++ == 0) {
+					occupied[occupiedCount++] = cell;
+					first[cell] = k;
+					sumX[cell] = 0;
+					sumY[cell] = 0;
+				}
+				sumX[cell] += x;
+				sumY[cell] += y;
+			} else {
+				cellOf[k] = -1;
+			}
+		}
+	}
+
+	/*
+	 * Draws the markers of the colors collected so far, and clears them.
+	 */
+	private void drawMarkers(final Graphics2D g, final PixelCanvas canvas, final int size) {
+		for (int c = 0; c < occupiedCount; c++) {
+			final int cell = occupied[c];
+			colored[cell] = 0;
+			Arrays.fill(sumARGB, 4 * cell, 4 * cell + 4, 0);
+		}
+		for (int k = 0; k < size; k++) {
+			final int argb = topColors[k];
+			final int cell = cellOf[k];
+			topColors[k] = 0;
+			if (cell >= 0 && argb >>> ALPHA_SHIFT != 0) {
+				colored[cell]++;
+				sumARGB[4 * cell] += argb >>> ALPHA_SHIFT;
+				sumARGB[4 * cell + 1] += (argb >> RED_SHIFT) & CHANNEL_MASK;
+				sumARGB[4 * cell + 2] += (argb >> GREEN_SHIFT) & CHANNEL_MASK;
+				sumARGB[4 * cell + 3] += argb & CHANNEL_MASK;
+			}
+		}
+		final Color toRestore = g.getColor();
+		final int full = cellSize * cellSize;
+		for (int c = 0; c < occupiedCount; c++) {
+			final int cell = occupied[c];
+			final int n = colored[cell];
+			if (n > 0) {
+				final int argb = (int) (sumARGB[4 * cell] / n) << ALPHA_SHIFT
+						| (int) (sumARGB[4 * cell + 1] / n) << RED_SHIFT
+						| (int) (sumARGB[4 * cell + 2] / n) << GREEN_SHIFT
+						| (int) (sumARGB[4 * cell + 3] / n);
+				/*
+				 * A cell is filled when it holds one node per pixel.
+				 */
+				final int side = Math.max(1, (int) Math.round(cellSize * Math.sqrt(Math.min(1, (double) n / full))));
+				final int x = cell % cols * cellSize + (cellSize - side) / 2;
+				final int y = cell / cols * cellSize + (cellSize - side) / 2;
+				if (canvas == null) {
+					g.setColor(new Color(argb, true));
+					g.fillRect(x, y, side, side);
+				} else {
+					canvas.fillRect(x, y, side, side, argb);
+				}
+			}
+		}
+		g.setColor(toRestore);
+	}
+
+	/**
+	 * The first node of each occupied cell, at the centroid of the cell.
+	 */
+	private final class Representatives implements NodeBatch {
+		private final NodeBatch batch;
+
+		private Representatives(final NodeBatch parent) {
+			batch = parent;
+		}
+
+		@Override
+		public INode<?> getNode(final int k) {
+			return batch.getNode(first[occupied[k]]);
+		}
+
+		@Override
+		public int getSnapshotIndex(final int k) {
+			return batch.getSnapshotIndex(first[occupied[k]]);
+		}
+
+		@Override
+		public IntPredicate getFlags(final NodeColumn column) {
+			final IntPredicate flags = batch.getFlags(column);
+			return k -> flags.test(first[occupied[k]]);
+		}
+
+		@Override
+		public IntToDoubleFunction getValues(final NodeColumn column) {
+			final IntToDoubleFunction values = batch.getValues(column);
+			return k -> values.applyAsDouble(first[occupied[k]]);
+		}
+
+		@Override
+		public ValueDistribution getDistribution(final NodeColumn column) {
+			return batch.getDistribution(column);
+		}
+
+		@Override
+		public double getViewX(final int k) {
+			final int cell = occupied[k];
+			return sumX[cell] / counts[cell];
+		}
+
+		@Override
+		public double getViewY(final int k) {
+			final int cell = occupied[k];
+			return sumY[cell] / counts[cell];
+		}
+
+		@Override
+		public int size() {
+			return occupiedCount;
+		}
+	}
+
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright (C) 2010-2015, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.monitors.rendering;
+
+import it.unibo.alchemist.boundary.monitors.snapshots.TripleBuffer;
+import it.unibo.alchemist.utils.L;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Draws frames on a dedicated thread, into offscreen images. Completed
+ * images are handed to the event dispatch thread through a
+ * {@link TripleBuffer}, so the three images are reused forever, and neither
+ * thread ever waits for the other.
+ * 
+ * Frame requests are coalesced: while a frame is waiting to be drawn, newer
+ * requests replace its parameters instead of queuing another frame.
+ * 
+ * A painter may draw a frame in several passes: each pass is published as
+ * soon as it is done, and the painter is called again with the latest
+ * parameters requested, which may be newer. The painter decides whether to
+ * continue the frame it was drawing or to start the newer one: images of a
+ * continued frame are published with its own parameters, see
+ * {@link #publishAs(Object)}.
+ * 
+ * @param <C>
+ *            the type of the parameters of a frame, e.g. the camera to draw
+ *            it with
+ */
+public final class OffscreenRenderer<C> {
+
+	private final ExecutorService executor;
+	private final Painter<C> painter;
+	private final Runnable onFrameReady;
+	private final TripleBuffer<Slot<C>> images = new TripleBuffer<>(Slot::new);
+	/*
+	 * Consumer side: the slot of the last image returned.
+	 */
+	private Slot<C> front;
+	private final AtomicReference<Request<C>> pending = new AtomicReference<>();
+	/*
+	 * Render thread only: the parameters to publish the image being drawn
+	 * with, if not those it was requested with.
+	 */
+	private C drawnWith;
+
+	/**
+	 * @param name
+	 *            the name of the render thread
+	 * @param painter
+	 *            draws a frame, on the render thread
+	 * @param onFrameReady
+	 *            called on the render thread whenever a new image is
+	 *            available
+	 */
+	public OffscreenRenderer(final String name, final Painter<C> painter, final Runnable onFrameReady) {
+		this.painter = Objects.requireNonNull(painter);
+		this.onFrameReady = Objects.requireNonNull(onFrameReady);
+		executor = Executors.newSingleThreadExecutor(r -> {
+			final Thread t = new Thread(r, name);
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	/**
+	 * Asks for a new frame. Can be called from any thread.
+	 * 
+	 * @param params
+	 *            the parameters of the frame
+	 * @param width
+	 *            the width of the image
+	 * @param height
+	 *            the height of the image
+	 */
+	public void requestFrame(final C params, final int width, final int height) {
+		if (pending.getAndSet(new Request<>(params, width, height)) == null) {
+			execute(this::drawPending);
+		}
+	}
+
+	/**
+	 * @return true if a frame has been requested, but its drawing did not
+	 *         start yet
+	 */
+	public boolean isFramePending() {
+		return pending.get() != null;
+	}
+
+	/**
+	 * Runs a task on the render thread, after the frames already requested.
+	 * 
+	 * @param task
+	 *            the task
+	 */
+	public void execute(final Runnable task) {
+		try {
+			executor.execute(task);
+		} catch (final RejectedExecutionException e) {
+			/*
+			 * Disposed: nothing left to draw.
+			 */
+			return;
+		}
+	}
+
+	/**
+	 * Runs a task on the render thread and waits for its result. Must not be
+	 * called from the render thread.
+	 * 
+	 * @param task
+	 *            the task
+	 * @param <V>
+	 *            the result type
+	 * @return the result of the task, or null if it failed
+	 */
+	public <V> V call(final Callable<V> task) {
+		try {
+			final Future<V> result = executor.submit(task);
+			return result.get();
+		} catch (final InterruptedException | ExecutionException | RejectedExecutionException e) {
+			L.error(e);
+			return null;
+		}
+	}
+
+	/**
+	 * Consumer side, to be called always from the same thread.
+	 * 
+	 * @return the most recently completed image, or null if no frame has been
+	 *         completed yet
+	 */
+	public BufferedImage getLatestImage() {
+		front = images.acquireLatest();
+		return front.image;
+	}
+
+	/**
+	 * Consumer side, to be called from the same thread as
+	 * {@link #getLatestImage()}.
+	 * 
+	 * @return the parameters the image last returned by
+	 *         {@link #getLatestImage()} was drawn with, as left by the
+	 *         painter, or null if no image has been returned yet
+	 */
+	public C getLatestParams() {
+		return front == null ? null : front.params;
+	}
+
+	/**
+	 * To be called by the painter, on the render thread: the image being
+	 * drawn is published with other parameters than those it was requested
+	 * with, e.g. because the painter is still completing an earlier frame.
+	 * 
+	 * @param params
+	 *            the parameters the image is actually drawn with
+	 */
+	public void publishAs(final C params) {
+		drawnWith = params;
+	}
+
+	/**
+	 * Stops the render thread. Frames requested later are ignored.
+	 */
+	public void dispose() {
+		executor.shutdownNow();
+	}
+
+	private void drawPending() {
+		final Request<C> request = pending.getAndSet(null);
+		if (request == null || request.width <= 0 || request.height <= 0) {
+			return;
+		}
+		final Slot<C> slot = images.getBackBuffer();
+		if (slot.image == null || slot.image.getWidth() != request.width || slot.image.getHeight() != request.height) {
+			slot.image = new BufferedImage(request.width, request.height, BufferedImage.TYPE_INT_RGB);
+		}
+		final Graphics2D g = slot.image.createGraphics();
+		final boolean complete;
+		drawnWith = null;
+		try {
+			complete = painter.paint(g, slot.image, request.params);
+		} catch (final RuntimeException e) {
+			/*
+			 * Keep the render thread alive: the next frame may succeed.
+			 */
+			L.error(e);
+			return;
+		} finally {
+			g.dispose();
+		}
+		slot.params = drawnWith == null ? request.params : drawnWith;
+		images.publish();
+		onFrameReady.run();
+		if (!complete && pending.compareAndSet(null, request)) {
+			execute(this::drawPending);
+		}
+	}
+
+	/**
+	 * Draws a frame.
+	 * 
+	 * @param <C>
+	 *            the type of the parameters of a frame
+	 */
+	@FunctionalInterface
+	public interface Painter<C> {
+		/**
+		 * @param g
+		 *            the graphics of the image
+		 * @param image
+		 *            the image, of type {@link BufferedImage#TYPE_INT_RGB}
+		 * @param params
+		 *            the parameters of the frame
+		 * @return true if the frame is complete, false if it must be called
+		 *         again to continue it: with the same parameters, unless
+		 *         newer ones have been requested meanwhile
+		 */
+		boolean paint(Graphics2D g, BufferedImage image, C params);
+	}
+
+	private static final class Slot<C> {
+		private BufferedImage image;
+		private C params;
+	}
+
+	private static final class Request<C> {
+		private final C params;
+		private final int width, height;
+
+		private Request(final C p, final int w, final int h) {
+			params = p;
+			width = w;
+			height = h;
+		}
+	}
+
+}
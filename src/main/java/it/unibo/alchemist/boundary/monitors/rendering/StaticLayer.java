@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2010-2015, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.monitors.rendering;
+
+import it.unibo.alchemist.boundary.wormhole.interfaces.IWormhole2D;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * A transparent image holding content that rarely changes, such as fixed
+ * obstacles, drawn again only when the camera or the content change. The
+ * content is identified by an object and a version: the layer is repainted
+ * if either differs from the last paint, if the camera maps the environment
+ * to the view differently, or if it has been {@link #invalidate()
+ * invalidated}.
+ * 
+ * Instances must be drawn by one thread at a time, while they can be
+ * invalidated by any thread.
+ */
+public final class StaticLayer {
+
+	/*
+	 * The view points of three environment points pin down an affine
+	 * camera; the view size follows.
+	 */
+	private static final double[] PROBE = { 0, 0, 1, 0, 0, 1 };
+	private static final int PROBE_POINTS = PROBE.length / 2;
+
+	private final double[] camera = new double[PROBE.length + 2];
+	private final double[] current = new double[PROBE.length + 2];
+	private BufferedImage image;
+	private Object content;
+	private long version;
+	private volatile boolean valid;
+
+	/**
+	 * Forces the next {@link #draw} to repaint the layer.
+	 */
+	public void invalidate() {
+		valid = false;
+	}
+
+	/**
+	 * Draws the layer on g, repainting it first if needed.
+	 * 
+	 * @param g
+	 *            the destination. Its rendering hints are used to repaint the
+	 *            layer
+	 * @param cam
+	 *            the camera
+	 * @param width
+	 *            the view width
+	 * @param height
+	 *            the view height
+	 * @param contentId
+	 *            identifies the content: compared by reference
+	 * @param contentVersion
+	 *            the version of the content
+	 * @param painter
+	 *            paints the content on a transparent image of the view size
+	 */
+	public void draw(final Graphics2D g, final IWormhole2D cam, final int width, final int height,
+			final Object contentId, final long contentVersion, final Consumer<Graphics2D> painter) {
+		if (width <= 0 || height <= 0) {
+			return;
+		}
+		cam.getViewPoints(PROBE, 0, current, 0, PROBE_POINTS);
+		current[PROBE.length] = width;
+		current[PROBE.length + 1] = height;
+		if (!valid || contentId != content || contentVersion != version || !Arrays.equals(current, camera)) {
+			/*
+			 * Validate before painting: an invalidation while painting is
+			 * not lost.
+			 */
+			valid = true;
+			if (image == null || image.getWidth() != width || image.getHeight() != height) {
+				image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+			}
+			final Graphics2D lg = image.createGraphics();
+			try {
+				lg.setComposite(AlphaComposite.Clear);
+				lg.fillRect(0, 0, width, height);
+				lg.setComposite(AlphaComposite.SrcOver);
+				lg.setRenderingHints(g.getRenderingHints());
+				painter.accept(lg);
+			} finally {
+				lg.dispose();
+			}
+			System.arraycopy(current, 0, camera, 0, camera.length);
+			content = contentId;
+			version = contentVersion;
+		}
+		g.drawImage(image, 0, 0, null);
+	}
+
+}
@@ -0,0 +1,331 @@
+/*
+ * Copyright (C) 2010-2015, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.monitors.rendering;
+
+import it.unibo.alchemist.boundary.gui.effects.Effect;
+import it.unibo.alchemist.boundary.gui.effects.NodeBatch;
+import it.unibo.alchemist.boundary.gui.effects.NodeColumn;
+import it.unibo.alchemist.boundary.gui.effects.ValueDistribution;
+import it.unibo.alchemist.model.interfaces.INode;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Composite;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntPredicate;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * Draws the effects of a batch of nodes in parallel. The view is split in
+ * tiles, each node is assigned to every tile within the largest
+ * {@link Effect#getViewExtent() extent} of the effects drawn, and each
+ * tile is drawn by a task of a {@link ForkJoinPool} into its own transparent
+ * image, clipped to the tile. The tiles are then copied on the destination.
+ * Nodes keep their order inside every tile, so overlapping shapes look the
+ * same as if drawn by a single thread.
+ * 
+ * Only effects declaring {@link Effect#supportsParallelBatches()} and their
+ * extent, and whose columns are all {@link NodeBatch#isCaptured(NodeColumn)
+ * captured} by the batch, are drawn in tiles: the others are drawn directly on the destination,
+ * in stack order, so that the live nodes are only read by the calling thread.
+ * Tile images are reused across frames, and must be used by one thread at a
+ * time.
+ */
+public final class TiledRasterizer {
+
+	private static final int TILES_PER_THREAD = 2;
+
+	private final ForkJoinPool pool;
+	private int cols, rows, tileWidth, tileHeight;
+	private BufferedImage[] tiles = new BufferedImage[0];
+	private int[] tileStart = new int[1];
+	private int[] tileItems = new int[0];
+	/*
+	 * State of the destination, copied to the tiles.
+	 */
+	private RenderingHints hints;
+	private Color color;
+
+	/**
+	 * Builds a rasterizer running on the common pool.
+	 */
+	public TiledRasterizer() {
+		this(ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * @param pool
+	 *            the pool drawing the tiles
+	 */
+	public TiledRasterizer(final ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * @return the number of threads drawing the tiles
+	 */
+	public int getParallelism() {
+		return pool.getParallelism();
+	}
+
+	/**
+	 * Applies a stack of effects to a batch of nodes.
+	 * 
+	 * @param g
+	 *            the destination
+	 * @param width
+	 *            the width of the area to draw
+	 * @param height
+	 *            the height of the area to draw
+	 * @param batch
+	 *            the nodes
+	 * @param effects
+	 *            the effects to apply, in order
+	 */
+	public void draw(final Graphics2D g, final int width, final int height, final NodeBatch batch, final List<Effect> effects) {
+		if (width <= 0 || height <= 0) {
+			return;
+		}
+		int margin = -1;
+		for (final Effect effect : effects) {
+			if (isParallel(effect, batch)) {
+				margin = Math.max(margin, effect.getViewExtent());
+			}
+		}
+		if (margin >= 0) {
+			layout(width, height);
+			assign(batch, margin);
+		}
+		int from = 0;
+		while (from < effects.size()) {
+			if (isParallel(effects.get(from), batch)) {
+				int to = from + 1;
+				while (to < effects.size() && isParallel(effects.get(to), batch)) {
+					to++;
+				}
+				drawTiles(g, batch, effects.subList(from, to));
+				from = to;
+			} else {
+				effects.get(from).apply(g, batch);
+				from++;
+			}
+		}
+	}
+
+	private static boolean isParallel(final Effect effect, final NodeBatch batch) {
+		if (!effect.supportsParallelBatches() || effect.getViewExtent() < 0) {
+			return false;
+		}
+		for (final NodeColumn column : effect.getColumns()) {
+			if (!batch.isCaptured(column)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void layout(final int width, final int height) {
+		final int count = Math.max(1, pool.getParallelism() * TILES_PER_THREAD);
+		final double aspect = (double) width / height;
+		cols = Math.max(1, Math.min(count, (int) Math.round(Math.sqrt(count * aspect))));
+		rows = Math.max(1, (count + cols - 1) / cols);
+		tileWidth = (width + cols - 1) / cols;
+		tileHeight = (height + rows - 1) / rows;
+		if (tiles.length != cols * rows) {
+			tiles = new BufferedImage[cols * rows];
+			tileStart = new int[cols * rows + 1];
+		}
+		for (int t = 0; t < tiles.length; t++) {
+			if (tiles[t] == null || tiles[t].getWidth() != tileWidth || tiles[t].getHeight() != tileHeight) {
+				tiles[t] = new BufferedImage(tileWidth, tileHeight, BufferedImage.TYPE_INT_ARGB_PRE);
+			}
+		}
+	}
+
+	/*
+	 * Counting sort of the nodes by tile: a node lands in every tile within
+	 * margin, in batch order.
+	 */
+	private void assign(final NodeBatch batch, final int margin) {
+		Arrays.fill(tileStart, 0);
+		int total = 0;
+		for (int k = 0; k < batch.size(); k++) {
+			final int c0 = col(batch.getViewX(k) - margin);
+			final int c1 = col(batch.getViewX(k) + margin);
+			final int r0 = row(batch.getViewY(k) - margin);
+			final int r1 = row(batch.getViewY(k) + margin);
+			for (int r = r0; r <= r1; r++) {
+				for (int c = c0; c <= c1; c++) {
+					tileStart[r * cols + c + 1]++;
+					total++;
+				}
+			}
+		}
+		for (int t = 0; t < tiles.length; t++) {
+			tileStart[t + 1] += tileStart[t];
+		}
+		if (tileItems.length < total) {
+			tileItems = new int[total];
+		}
+		final int[] next = Arrays.copyOf(tileStart, tiles.length);
+		for (int k = 0; k < batch.size(); k++) {
+			final int c0 = col(batch.getViewX(k) - margin);
+			final int c1 = col(batch.getViewX(k) + margin);
+			final int r0 = row(batch.getViewY(k) - margin);
+			final int r1 = row(batch.getViewY(k) + margin);
+			for (int r = r0; r <= r1; r++) {
+				for (int c = c0; c <= c1; c++) {
+					tileItems[next[r * cols + c]++] = k;
+				}
+			}
+		}
+	}
+
+	private int col(final double x) {
+		return Math.max(0, Math.min(cols - 1, (int) Math.floor(x / tileWidth)));
+	}
+
+	private int row(final double y) {
+		return Math.max(0, Math.min(rows - 1, (int) Math.floor(y / tileHeight)));
+	}
+
+	private void drawTiles(final Graphics2D g, final NodeBatch batch, final List<Effect> effects) {
+		hints = g.getRenderingHints();
+		color = g.getColor();
+		pool.invoke(new TileTask(0, tiles.length, batch, effects));
+		for (int t = 0; t < tiles.length; t++) {
+			if (tileStart[t + 1] > tileStart[t]) {
+				g.drawImage(tiles[t], (t % cols) * tileWidth, (t / cols) * tileHeight, null);
+			}
+		}
+	}
+
+	private void drawTile(final int t, final NodeBatch batch, final List<Effect> effects) {
+		final int start = tileStart[t];
+		final int end = tileStart[t + 1];
+		if (start == end) {
+			return;
+		}
+		final Graphics2D tg = tiles[t].createGraphics();
+		try {
+			final Composite composite = tg.getComposite();
+			tg.setComposite(AlphaComposite.Clear);
+			tg.fillRect(0, 0, tileWidth, tileHeight);
+			tg.setComposite(composite);
+			tg.setRenderingHints(hints);
+			tg.setColor(color);
+			tg.translate(-(t % cols) * tileWidth, -(t / cols) * tileHeight);
+			final NodeBatch sub = new SubBatch(batch, start, end);
+			for (final Effect effect : effects) {
+				effect.apply(tg, sub);
+			}
+		} finally {
+			tg.dispose();
+		}
+	}
+
+	/**
+	 * Splits the tiles in halves until one is left.
+	 */
+	private final class TileTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final int from, to;
+		private final transient NodeBatch batch;
+		private final transient List<Effect> effects;
+
+		private TileTask(final int start, final int end, final NodeBatch nodes, final List<Effect> stack) {
+			from = start;
+			to = end;
+			batch = nodes;
+			effects = stack;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from == 1) {
+				drawTile(from, batch, effects);
+			} else {
+				final int mid = (from + to) >>> 1;
+				invokeAll(new TileTask(from, mid, batch, effects), new TileTask(mid, to, batch, effects));
+			}
+		}
+	}
+
+	/**
+	 * The nodes of a batch assigned to a tile.
+	 */
+	private final class SubBatch implements NodeBatch {
+		private final NodeBatch batch;
+		private final int start, size;
+
+		private SubBatch(final NodeBatch parent, final int from, final int to) {
+			batch = parent;
+			start = from;
+			size = to - from;
+		}
+
+		@Override
+		public INode<?> getNode(final int k) {
+			return batch.getNode(tileItems[start + k]);
+		}
+
+		@Override
+		public int getSnapshotIndex(final int k) {
+			return batch.getSnapshotIndex(tileItems[start + k]);
+		}
+
+		@Override
+		public boolean isCaptured(final NodeColumn column) {
+			return batch.isCaptured(column);
+		}
+
+		@Override
+		public IntPredicate getFlags(final NodeColumn column) {
+			final IntPredicate flags = batch.getFlags(column);
+			return k -> flags.test(tileItems[start + k]);
+		}
+
+		@Override
+		public IntToDoubleFunction getValues(final NodeColumn column) {
+			final IntToDoubleFunction values = batch.getValues(column);
+			return k -> values.applyAsDouble(tileItems[start + k]);
+		}
+
+		/*
+		 * Tiles of a batch share its distribution, so colors do not change
+		 * across tile borders.
+		 */
+		@Override
+		public ValueDistribution getDistribution(final NodeColumn column) {
+			return batch.getDistribution(column);
+		}
+
+		@Override
+		public double getViewX(final int k) {
+			return batch.getViewX(tileItems[start + k]);
+		}
+
+		@Override
+		public double getViewY(final int k) {
+			return batch.getViewY(tileItems[start + k]);
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+	}
+
+}
@@ -0,0 +1,5 @@
+/**
+ * This package contains the helpers used by the 2D displays to draw the
+ * snapshots of an environment.
+ */
+package it.unibo.alchemist.boundary.monitors.rendering;
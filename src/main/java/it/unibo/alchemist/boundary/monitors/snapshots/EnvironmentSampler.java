@@ -0,0 +1,231 @@
+/*
+ * Copyright (C) 2010-2015, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.monitors.snapshots;
+
+import it.unibo.alchemist.boundary.gui.effects.NodeColumn;
+import it.unibo.alchemist.model.interfaces.IEnvironment;
+import it.unibo.alchemist.model.interfaces.INode;
+import it.unibo.alchemist.model.interfaces.IObstacle2D;
+import it.unibo.alchemist.model.interfaces.IReaction;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Producer side of the display pipeline: keeps an up to date copy of the
+ * environment state and publishes it as {@link EnvironmentSnapshot}s through
+ * a {@link TripleBuffer}.
+ * 
+ * In incremental mode, only the nodes whose reactions were executed since the
+ * last sample are checked for movement, and only the neighborhoods of moved
+ * nodes (and of their old and new neighbors) are refreshed. A full resync is
+ * performed periodically, whenever the number of nodes changes and whenever
+ * a reaction of an unknown node is executed, so that nodes added or removed
+ * and changes not caused by local reactions are eventually picked up.
+ * 
+ * Links are collected only if requested via {@link #setCollectLinks(boolean)}:
+ * when they are not, no neighborhood is ever read. Node columns requested via
+ * {@link #setColumns(Collection)} are captured at every sample, for all the
+ * nodes, since any reaction may have changed them.
+ * 
+ * Sampling and reaction tracking must be performed by the simulation thread,
+ * while {@link #acquireLatest()} is reserved to the painting code.
+ * 
+ * @param <T>
+ *            concentration type
+ */
+public final class EnvironmentSampler<T> {
+
+	/**
+	 * Default number of samples between two full resyncs.
+	 */
+	public static final int DEFAULT_FULL_RESYNC_PERIOD = 50;
+
+	private final TripleBuffer<EnvironmentSnapshot<T>> frames = new TripleBuffer<>(EnvironmentSnapshot::new);
+	private final SampledState<T> state = new SampledState<>();
+	private final BitSet touched = new BitSet();
+	private final BitSet moved = new BitSet();
+	private final BitSet linksChanged = new BitSet();
+	private NodeIndex<T> index = NodeIndex.empty();
+	private volatile boolean incremental = true;
+	private volatile boolean collectLinks;
+	private volatile boolean needsFullResync = true;
+	private volatile int fullResyncPeriod = DEFAULT_FULL_RESYNC_PERIOD;
+	private volatile Collection<NodeColumn> columns = Collections.emptyList();
+	private long samples;
+
+	/**
+	 * Consumer side.
+	 * 
+	 * @return the most recently published snapshot
+	 */
+	public EnvironmentSnapshot<T> acquireLatest() {
+		return frames.acquireLatest();
+	}
+
+	/**
+	 * @return true if a snapshot has been published and not yet acquired by
+	 *         the consumer
+	 */
+	public boolean hasFreshSnapshot() {
+		return frames.hasFreshBuffer();
+	}
+
+	/**
+	 * Forces the next sample to be a full resync.
+	 */
+	public void invalidate() {
+		needsFullResync = true;
+	}
+
+	/**
+	 * @return true if the incremental mode is enabled
+	 */
+	public boolean isIncremental() {
+		return incremental;
+	}
+
+	/**
+	 * Records that a reaction has been executed. Must be called for every
+	 * simulation step, including those that are not sampled.
+	 * 
+	 * @param r
+	 *            the executed reaction, null if unknown
+	 */
+	public void reactionExecuted(final IReaction<T> r) {
+		if (incremental && !needsFullResync) {
+			final INode<T> n = r == null ? null : r.getNode();
+			final int i = n == null ? -1 : index.indexOf(n);
+			if (i >= 0) {
+				touched.set(i);
+			} else {
+				needsFullResync = true;
+			}
+		}
+	}
+
+	/**
+	 * Captures the environment and publishes the result.
+	 * 
+	 * @param env
+	 *            the environment
+	 * @param obstacles
+	 *            the obstacles to draw, null values allowed
+	 */
+	public void sample(final IEnvironment<T> env, final List<? extends IObstacle2D> obstacles) {
+		samples++;
+		if (!incremental || needsFullResync || collectLinks != state.hasLinks() || env.getNodesNumber() != index.size() || fullResyncPeriod > 0 && samples % fullResyncPeriod == 0) {
+			fullResync(env, obstacles);
+		} else {
+			incrementalUpdate(env, obstacles);
+		}
+		final EnvironmentSnapshot<T> frame = frames.getBackBuffer();
+		frame.copyFrom(state);
+		frame.captureColumns(columns);
+		frames.publish();
+	}
+
+	private void fullResync(final IEnvironment<T> env, final List<? extends IObstacle2D> obstacles) {
+		index = index.update(env);
+		state.capture(env, index, obstacles, collectLinks);
+		for (final EnvironmentSnapshot<T> frame : frames.getBuffers()) {
+			frame.markAllStale();
+		}
+		touched.clear();
+		needsFullResync = false;
+	}
+
+	private void incrementalUpdate(final IEnvironment<T> env, final List<? extends IObstacle2D> obstacles) {
+		state.setObstacles(obstacles);
+		moved.clear();
+		for (int i = touched.nextSetBit(0); i >= 0; i = touched.nextSetBit(i + 1)) {
+			if (state.updatePosition(i, env.getPosition(index.getNode(i)))) {
+				moved.set(i);
+				markStale(i);
+			}
+		}
+		touched.clear();
+		if (moved.isEmpty() || !state.hasLinks()) {
+			return;
+		}
+		/*
+		 * A node that moved may have lost some neighbors and gained others:
+		 * all of them need their neighborhood refreshed.
+		 */
+		linksChanged.clear();
+		linksChanged.or(moved);
+		for (int i = moved.nextSetBit(0); i >= 0; i = moved.nextSetBit(i + 1)) {
+			markNeighbors(state.getRow(i));
+			final int[] updated = state.computeRow(env, index.getNode(i));
+			markNeighbors(updated);
+			state.setRow(i, updated);
+		}
+		linksChanged.andNot(moved);
+		for (int i = linksChanged.nextSetBit(0); i >= 0; i = linksChanged.nextSetBit(i + 1)) {
+			state.setRow(i, state.computeRow(env, index.getNode(i)));
+		}
+		for (final EnvironmentSnapshot<T> frame : frames.getBuffers()) {
+			frame.markLinksStale();
+		}
+	}
+
+	private void markNeighbors(final int[] row) {
+		for (final int j : row) {
+			linksChanged.set(j);
+		}
+	}
+
+	private void markStale(final int i) {
+		for (final EnvironmentSnapshot<T> frame : frames.getBuffers()) {
+			frame.markStale(i);
+		}
+	}
+
+	/**
+	 * @param enabled
+	 *            true if the links between nodes must be captured. Enabling
+	 *            the collection triggers a full resync at the next sample:
+	 *            while the simulation is paused, the caller has to request
+	 *            one for the links to show up.
+	 */
+	public void setCollectLinks(final boolean enabled) {
+		collectLinks = enabled;
+	}
+
+	/**
+	 * @param requested
+	 *            the node columns to capture with the positions. The
+	 *            collection is copied
+	 */
+	public void setColumns(final Collection<NodeColumn> requested) {
+		columns = Collections.unmodifiableList(new ArrayList<>(requested));
+	}
+
+	/**
+	 * @param fullResync
+	 *            number of samples between two full resyncs. Values lower than
+	 *            one disable the periodic resync.
+	 */
+	public void setFullResyncPeriod(final int fullResync) {
+		fullResyncPeriod = fullResync;
+	}
+
+	/**
+	 * @param enabled
+	 *            true to enable the incremental mode
+	 */
+	public void setIncremental(final boolean enabled) {
+		incremental = enabled;
+		needsFullResync = true;
+	}
+
+}
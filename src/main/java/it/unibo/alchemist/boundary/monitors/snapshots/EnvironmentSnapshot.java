@@ -0,0 +1,387 @@
+/*
+ * Copyright (C) 2010-2015, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.monitors.snapshots;
+
+import it.unibo.alchemist.boundary.gui.effects.NodeColumn;
+import it.unibo.alchemist.boundary.gui.effects.ValueDistribution;
+import it.unibo.alchemist.model.interfaces.INode;
+import it.unibo.alchemist.model.interfaces.IObstacle2D;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntPredicate;
+import java.util.function.IntToDoubleFunction;
+import java.util.stream.IntStream;
+
+/**
+ * The state of an environment at a given point of the simulation, as seen by
+ * a display. A snapshot is written by the simulation thread while it is the
+ * back buffer of a {@link TripleBuffer}, and it is never modified again until
+ * the consumer releases it, so the painting code can read it without any
+ * synchronization.
+ * 
+ * Data is stored as a structure of arrays indexed by the {@link NodeIndex} the
+ * snapshot was captured with. The arrays are reused across captures, and
+ * they only grow when the environment does, so a steady state capture does
+ * not produce garbage. Links, if captured, are stored in compressed sparse
+ * row form: the neighbors of node i are the link targets in
+ * [{@link #getLinkOffset(int) getLinkOffset(i)},
+ * {@link #getLinkOffset(int) getLinkOffset(i + 1)}), sorted by index.
+ * Node columns, if requested, are captured with the positions: numeric
+ * columns as arrays of doubles, along with their {@link ValueDistribution},
+ * flag columns as bitmaps.
+ * 
+ * @param <T>
+ *            concentration type
+ */
+public final class EnvironmentSnapshot<T> {
+
+	private static final int INITIAL_CAPACITY = 16;
+	/*
+	 * Below this size, columns are captured sequentially. Above, nodes are
+	 * split in chunks made of whole bitmap words, so that no word is written
+	 * by two threads.
+	 */
+	private static final int PARALLEL_THRESHOLD = 4096;
+	private static final int CHUNK_WORDS = 16;
+	private static final int WORD_SHIFT = 6;
+	private static final int WORD_SIZE = 1 << WORD_SHIFT;
+
+	private NodeIndex<T> index = NodeIndex.empty();
+	private int[] ids = new int[INITIAL_CAPACITY];
+	private double[] xs = new double[INITIAL_CAPACITY];
+	private double[] ys = new double[INITIAL_CAPACITY];
+	private boolean links;
+	private int[] linkOffsets = new int[INITIAL_CAPACITY + 1];
+	private int[] linkTargets = new int[INITIAL_CAPACITY];
+	private List<? extends IObstacle2D> obstacles = Collections.emptyList();
+	private long geometryVersion;
+	private final Map<NodeColumn, Column> columns = new HashMap<>();
+	/*
+	 * Producer side bookkeeping: which entries differ from the sampler state.
+	 */
+	private final BitSet stale = new BitSet();
+	private boolean allStale = true;
+	private boolean linksStale = true;
+	/*
+	 * Consumer side: built on first use.
+	 */
+	private final SpatialIndex spatialIndex = new SpatialIndex();
+	private boolean spatialIndexValid;
+
+	/**
+	 * Copies into this snapshot the entries of the source that changed since
+	 * the last copy.
+	 * 
+	 * @param source
+	 *            the up to date state
+	 */
+	void copyFrom(final SampledState<T> source) {
+		obstacles = source.getObstacles();
+		geometryVersion = source.getVersion();
+		final int size = source.getIndex().size();
+		if (allStale || index.getGeneration() != source.getIndex().getGeneration()) {
+			index = source.getIndex();
+			if (size > ids.length) {
+				final int capacity = Math.max(size, ids.length + (ids.length >> 1));
+				ids = Arrays.copyOf(ids, capacity);
+				xs = Arrays.copyOf(xs, capacity);
+				ys = Arrays.copyOf(ys, capacity);
+			}
+			System.arraycopy(source.getIds(), 0, ids, 0, size);
+			System.arraycopy(source.getXs(), 0, xs, 0, size);
+			System.arraycopy(source.getYs(), 0, ys, 0, size);
+			linksStale = true;
+		} else {
+			for (int i = stale.nextSetBit(0); i >= 0; i = stale.nextSetBit(i + 1)) {
+				ids[i] = source.getIds()[i];
+				xs[i] = source.getXs()[i];
+				ys[i] = source.getYs()[i];
+			}
+		}
+		if (source.hasLinks()) {
+			if (linksStale || !links) {
+				copyLinks(source, size);
+			}
+		} else {
+			links = false;
+		}
+		stale.clear();
+		allStale = false;
+		linksStale = false;
+		spatialIndexValid = false;
+	}
+
+	/**
+	 * Captures the columns of the nodes in this snapshot, evaluating the live
+	 * nodes, and reduces the numeric ones to their distribution. Columns not
+	 * requested are dropped.
+	 * 
+	 * @param requested
+	 *            the columns to capture
+	 */
+	void captureColumns(final Collection<NodeColumn> requested) {
+		columns.keySet().retainAll(requested);
+		final int size = size();
+		for (final NodeColumn column : requested) {
+			final Column data = columns.computeIfAbsent(column, c -> new Column());
+			if (column.isFlag()) {
+				final int words = (size + WORD_SIZE - 1) >> WORD_SHIFT;
+				if (data.flags.length < words) {
+					data.flags = new long[Math.max(words, data.flags.length + (data.flags.length >> 1))];
+				}
+			} else if (data.values.length < size) {
+				data.values = new double[Math.max(size, data.values.length + (data.values.length >> 1))];
+			}
+			if (size < PARALLEL_THRESHOLD) {
+				capture(column, data, 0, size);
+			} else {
+				final int chunk = CHUNK_WORDS * WORD_SIZE;
+				IntStream.range(0, (size + chunk - 1) / chunk).parallel()
+					.forEach(c -> capture(column, data, c * chunk, Math.min(size, (c + 1) * chunk)));
+			}
+			if (!column.isFlag()) {
+				final double[] values = data.values;
+				data.distribution = ValueDistribution.of(i -> values[i], size, size >= PARALLEL_THRESHOLD);
+			}
+		}
+	}
+
+	private void capture(final NodeColumn column, final Column data, final int from, final int to) {
+		if (column.isFlag()) {
+			for (int w = from >> WORD_SHIFT; w << WORD_SHIFT < to; w++) {
+				long word = 0;
+				final int end = Math.min(to, (w + 1) << WORD_SHIFT);
+				for (int i = w << WORD_SHIFT; i < end; i++) {
+					if (column.test(index.getNode(i))) {
+						word |= 1L << i;
+					}
+				}
+				data.flags[w] = word;
+			}
+		} else {
+			for (int i = from; i < to; i++) {
+				data.values[i] = column.evaluate(index.getNode(i));
+			}
+		}
+	}
+
+	private void copyLinks(final SampledState<T> source, final int size) {
+		if (linkOffsets.length < size + 1) {
+			linkOffsets = new int[Math.max(size + 1, linkOffsets.length + (linkOffsets.length >> 1))];
+		}
+		int total = 0;
+		for (int i = 0; i < size; i++) {
+			linkOffsets[i] = total;
+			total += source.getRow(i).length;
+		}
+		linkOffsets[size] = total;
+		if (linkTargets.length < total) {
+			linkTargets = new int[Math.max(total, linkTargets.length + (linkTargets.length >> 1))];
+		}
+		for (int i = 0; i < size; i++) {
+			final int[] row = source.getRow(i);
+			System.arraycopy(row, 0, linkTargets, linkOffsets[i], row.length);
+		}
+		links = true;
+	}
+
+	/**
+	 * Marks an entry as changed in the sampler.
+	 * 
+	 * @param i
+	 *            the node index
+	 */
+	void markStale(final int i) {
+		stale.set(i);
+	}
+
+	/**
+	 * Marks every entry as changed in the sampler.
+	 */
+	void markAllStale() {
+		allStale = true;
+		stale.clear();
+	}
+
+	/**
+	 * Marks the adjacency as changed in the sampler.
+	 */
+	void markLinksStale() {
+		linksStale = true;
+	}
+
+	/**
+	 * @param column
+	 *            a numeric column
+	 * @return the distribution of the values of all the nodes, or null if the
+	 *         column has not been captured
+	 */
+	public ValueDistribution getDistribution(final NodeColumn column) {
+		final Column data = columns.get(column);
+		return data == null ? null : data.distribution;
+	}
+
+	/**
+	 * @param column
+	 *            a flag column
+	 * @return the flags of the nodes, by node index, or null if the column
+	 *         has not been captured
+	 */
+	public IntPredicate getFlags(final NodeColumn column) {
+		final Column data = columns.get(column);
+		if (data == null || !column.isFlag()) {
+			return null;
+		}
+		final long[] flags = data.flags;
+		return i -> (flags[i >> WORD_SHIFT] & 1L << i) != 0;
+	}
+
+	/**
+	 * @param column
+	 *            a numeric column
+	 * @return the values of the nodes, by node index, or null if the column
+	 *         has not been captured
+	 */
+	public IntToDoubleFunction getValues(final NodeColumn column) {
+		final Column data = columns.get(column);
+		if (data == null || column.isFlag()) {
+			return null;
+		}
+		final double[] values = data.values;
+		return i -> values[i];
+	}
+
+	/**
+	 * @return a number that changes whenever a node moves, or a link is
+	 *         added or removed. Snapshots with the same version have the
+	 *         same positions and links
+	 */
+	public long getGeometryVersion() {
+		return geometryVersion;
+	}
+
+	/**
+	 * @return the index this snapshot was captured with
+	 */
+	public NodeIndex<T> getIndex() {
+		return index;
+	}
+
+	/**
+	 * @param i
+	 *            the node index
+	 * @return the node id
+	 */
+	public int getId(final int i) {
+		return ids[i];
+	}
+
+	/**
+	 * @param i
+	 *            the node index, in [0, {@link #size()}]
+	 * @return the position of the first neighbor of node i among the link
+	 *         targets
+	 */
+	public int getLinkOffset(final int i) {
+		return linkOffsets[i];
+	}
+
+	/**
+	 * @param k
+	 *            the position among the link targets
+	 * @return the index of the target node
+	 */
+	public int getLinkTarget(final int k) {
+		return linkTargets[k];
+	}
+
+	/**
+	 * @param i
+	 *            the node index
+	 * @return the node
+	 */
+	public INode<T> getNode(final int i) {
+		return index.getNode(i);
+	}
+
+	/**
+	 * @return the obstacles of the environment
+	 */
+	public List<? extends IObstacle2D> getObstacles() {
+		return obstacles;
+	}
+
+	/**
+	 * @return a spatial index over the node positions of this snapshot. It is
+	 *         built on the first call, and it must be queried from the
+	 *         thread that consumes the snapshots
+	 */
+	public SpatialIndex getSpatialIndex() {
+		if (!spatialIndexValid) {
+			spatialIndex.build(xs, ys, size());
+			spatialIndexValid = true;
+		}
+		return spatialIndex;
+	}
+
+	/**
+	 * @param i
+	 *            the node index
+	 * @return the x coordinate of the node
+	 */
+	public double getX(final int i) {
+		return xs[i];
+	}
+
+	/**
+	 * @param i
+	 *            the node index
+	 * @return the y coordinate of the node
+	 */
+	public double getY(final int i) {
+		return ys[i];
+	}
+
+	/**
+	 * @return true if the links between nodes have been captured
+	 */
+	public boolean hasLinks() {
+		return links;
+	}
+
+	/**
+	 * @param node
+	 *            the node
+	 * @return the index of the node in this snapshot, or -1 if the node was
+	 *         not in the environment when the snapshot was captured
+	 */
+	public int indexOf(final INode<?> node) {
+		return index.indexOf(node);
+	}
+
+	/**
+	 * @return the number of nodes in this snapshot
+	 */
+	public int size() {
+		return index.size();
+	}
+
+	private static final class Column {
+		private double[] values = new double[0];
+		private long[] flags = new long[0];
+		private ValueDistribution distribution;
+	}
+
+}
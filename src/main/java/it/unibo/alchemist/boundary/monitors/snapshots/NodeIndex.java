@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2010-2015, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.monitors.snapshots;
+
+import it.unibo.alchemist.model.interfaces.IEnvironment;
+import it.unibo.alchemist.model.interfaces.INode;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Immutable, dense mapping between the nodes of an environment and the
+ * integers in [0, size). The mapping follows the environment iteration order,
+ * and it is rebuilt only when the set of nodes changes: as long as no node is
+ * added or removed, {@link #update(IEnvironment)} returns the very same
+ * instance, and every node keeps its index across frames.
+ * 
+ * @param <T>
+ *            concentration type
+ */
+public final class NodeIndex<T> {
+
+	private static final NodeIndex<Object> EMPTY = new NodeIndex<>(new Object[0], 0);
+
+	private final Object[] nodes;
+	private final Map<INode<T>, Integer> indices;
+	private final long generation;
+
+	@SuppressWarnings("unchecked")
+	private NodeIndex(final Object[] n, final long gen) {
+		nodes = n;
+		generation = gen;
+		indices = new HashMap<>(n.length * 2);
+		for (int i = 0; i < n.length; i++) {
+			indices.put((INode<T>) n[i], i);
+		}
+	}
+
+	/**
+	 * @param <T>
+	 *            concentration type
+	 * @return an index with no nodes
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> NodeIndex<T> empty() {
+		return (NodeIndex<T>) EMPTY;
+	}
+
+	/**
+	 * Checks the environment against this index. The check does not allocate
+	 * nor hash anything if the environment has the same nodes, in the same
+	 * order.
+	 * 
+	 * @param env
+	 *            the environment
+	 * @return this index if the environment nodes did not change, a new index
+	 *         otherwise
+	 */
+	public NodeIndex<T> update(final IEnvironment<T> env) {
+		if (env.getNodesNumber() == nodes.length) {
+			final Iterator<INode<T>> it = env.iterator();
+			int i = 0;
+			while (i < nodes.length && it.hasNext() && it.next() == nodes[i]) {
+				i++;
+			}
+			if (i == nodes.length && !it.hasNext()) {
+				return this;
+			}
+		}
+		return rebuild(env);
+	}
+
+	/**
+	 * Builds a new index for the environment, regardless of whether it
+	 * changed.
+	 * 
+	 * @param env
+	 *            the environment
+	 * @return a new index
+	 */
+	public NodeIndex<T> rebuild(final IEnvironment<T> env) {
+		final Object[] n = new Object[env.getNodesNumber()];
+		int i = 0;
+		for (final INode<T> node : env) {
+			n[i++] = node;
+		}
+		return new NodeIndex<>(n, generation + 1);
+	}
+
+	/**
+	 * @param i
+	 *            the index
+	 * @return the node with that index
+	 */
+	@SuppressWarnings("unchecked")
+	public INode<T> getNode(final int i) {
+		return (INode<T>) nodes[i];
+	}
+
+	/**
+	 * @param node
+	 *            the node
+	 * @return the index of the node, or -1 if the node is not indexed
+	 */
+	public int indexOf(final INode<?> node) {
+		final Integer res = indices.get(node);
+		return res == null ? -1 : res;
+	}
+
+	/**
+	 * @return how many times the index has been rebuilt: two indices with the
+	 *         same generation map nodes in the same way
+	 */
+	public long getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * @return the number of indexed nodes
+	 */
+	public int size() {
+		return nodes.length;
+	}
+
+}
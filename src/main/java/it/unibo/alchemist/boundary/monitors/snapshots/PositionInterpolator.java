@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2010-2015, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.monitors.snapshots;
+
+import java.util.Arrays;
+
+/**
+ * Moves the nodes smoothly between two consecutive snapshots, so that a
+ * display can draw many frames per snapshot taken. When a new snapshot
+ * arrives, each node starts from where it is currently drawn and reaches its
+ * new position in about the time elapsed between the last two snapshots.
+ * Nodes that were not in the previous snapshot appear directly at their
+ * position.
+ * 
+ * Positions are copied, since snapshots are recycled by the producer as soon
+ * as a newer one is acquired. Like the snapshots it reads, an interpolator
+ * must be used by the consumer thread only. All the times are in
+ * nanoseconds, as returned by {@link System#nanoTime()}.
+ * 
+ * @param <T>
+ *            concentration type
+ */
+public final class PositionInterpolator<T> {
+
+	private static final int INITIAL_CAPACITY = 16;
+	/*
+	 * Weight of the latest interval in the moving average.
+	 */
+	private static final double SMOOTHING = 0.3;
+	/*
+	 * Longer gaps are pauses, not a sampling rate to follow.
+	 */
+	private static final long MAX_DURATION = 1_000_000_000L;
+
+	private EnvironmentSnapshot<T> target;
+	private NodeIndex<T> index = NodeIndex.empty();
+	private double[] fromX = new double[INITIAL_CAPACITY];
+	private double[] fromY = new double[INITIAL_CAPACITY];
+	private double[] toX = new double[INITIAL_CAPACITY];
+	private double[] toY = new double[INITIAL_CAPACITY];
+	private double[] swapX = new double[INITIAL_CAPACITY];
+	private double[] swapY = new double[INITIAL_CAPACITY];
+	private long arrival;
+	private double duration;
+	private double alpha = 1;
+
+	/**
+	 * Moves the interpolation forward in time, possibly towards a new
+	 * snapshot.
+	 * 
+	 * @param frame
+	 *            the latest snapshot
+	 * @param now
+	 *            the current time
+	 */
+	public void update(final EnvironmentSnapshot<T> frame, final long now) {
+		alpha = progress(now);
+		if (frame != target) {
+			retarget(frame, now);
+			alpha = progress(now);
+		}
+	}
+
+	private double progress(final long now) {
+		return duration <= 0 ? 1 : Math.min(1, Math.max(0, (now - arrival) / duration));
+	}
+
+	private void retarget(final EnvironmentSnapshot<T> frame, final long now) {
+		final int size = frame.size();
+		if (swapX.length < size) {
+			final int capacity = Math.max(size, swapX.length + (swapX.length >> 1));
+			swapX = new double[capacity];
+			swapY = new double[capacity];
+		}
+		/*
+		 * Start from where each node is drawn now.
+		 */
+		final boolean sameNodes = target != null && frame.getIndex().getGeneration() == index.getGeneration() && size == index.size();
+		for (int i = 0; i < size; i++) {
+			final int j;
+			if (sameNodes) {
+				j = i;
+			} else {
+				j = target == null ? -1 : index.indexOf(frame.getNode(i));
+			}
+			if (j >= 0) {
+				swapX[i] = getX(j);
+				swapY[i] = getY(j);
+			} else {
+				swapX[i] = frame.getX(i);
+				swapY[i] = frame.getY(i);
+			}
+		}
+		double[] tmp = fromX;
+		fromX = swapX;
+		swapX = tmp;
+		tmp = fromY;
+		fromY = swapY;
+		swapY = tmp;
+		if (toX.length < size) {
+			toX = Arrays.copyOf(toX, fromX.length);
+			toY = Arrays.copyOf(toY, fromX.length);
+		}
+		for (int i = 0; i < size; i++) {
+			toX[i] = frame.getX(i);
+			toY[i] = frame.getY(i);
+		}
+		if (target != null) {
+			final long interval = Math.min(MAX_DURATION, now - arrival);
+			duration = duration == 0 ? interval : duration + SMOOTHING * (interval - duration);
+		}
+		target = frame;
+		index = frame.getIndex();
+		arrival = now;
+	}
+
+	/**
+	 * @param frame
+	 *            a snapshot
+	 * @return true if the positions returned by this interpolator are
+	 *         indexed like the given snapshot
+	 */
+	public boolean follows(final EnvironmentSnapshot<T> frame) {
+		return frame == target;
+	}
+
+	/**
+	 * @return true if the nodes did not reach the latest snapshot yet
+	 */
+	public boolean isMoving() {
+		return alpha < 1;
+	}
+
+	/**
+	 * @param i
+	 *            the node index in the latest snapshot
+	 * @return the x coordinate the node should be drawn at
+	 */
+	public double getX(final int i) {
+		return fromX[i] + (toX[i] - fromX[i]) * alpha;
+	}
+
+	/**
+	 * @param i
+	 *            the node index in the latest snapshot
+	 * @return the y coordinate the node should be drawn at
+	 */
+	public double getY(final int i) {
+		return fromY[i] + (toY[i] - fromY[i]) * alpha;
+	}
+
+	/**
+	 * Forgets the previous snapshots: the next one is drawn as it is.
+	 */
+	public void reset() {
+		target = null;
+		index = NodeIndex.empty();
+		duration = 0;
+		alpha = 1;
+	}
+
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2010-2015, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.monitors.snapshots;
+
+import it.unibo.alchemist.model.interfaces.IEnvironment;
+import it.unibo.alchemist.model.interfaces.INeighborhood;
+import it.unibo.alchemist.model.interfaces.INode;
+import it.unibo.alchemist.model.interfaces.IObstacle2D;
+import it.unibo.alchemist.model.interfaces.IPosition;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The up to date state kept by the {@link EnvironmentSampler}, from which the
+ * published snapshots are copied. Adjacency is stored as one sorted row of
+ * node indices per node, so that single rows can be replaced when nodes move.
+ * 
+ * @param <T>
+ *            concentration type
+ */
+final class SampledState<T> {
+
+	private static final int[] NO_NEIGHBORS = new int[0];
+	private static final int INITIAL_CAPACITY = 16;
+
+	private NodeIndex<T> index = NodeIndex.empty();
+	private int[] ids = new int[INITIAL_CAPACITY];
+	private double[] xs = new double[INITIAL_CAPACITY];
+	private double[] ys = new double[INITIAL_CAPACITY];
+	private int[][] rows = new int[INITIAL_CAPACITY][];
+	private boolean links;
+	private List<? extends IObstacle2D> obstacles = Collections.emptyList();
+	/*
+	 * Incremented whenever a position or a link changes.
+	 */
+	private long version;
+
+	/**
+	 * Scans the whole environment.
+	 * 
+	 * @param env
+	 *            the environment
+	 * @param nodes
+	 *            an up to date index of the environment nodes
+	 * @param obs
+	 *            the obstacles, null values allowed
+	 * @param withLinks
+	 *            true if the adjacency must be captured
+	 */
+	void capture(final IEnvironment<T> env, final NodeIndex<T> nodes, final List<? extends IObstacle2D> obs, final boolean withLinks) {
+		final int size = nodes.size();
+		boolean changed = size != index.size() || withLinks != links;
+		index = nodes;
+		links = withLinks;
+		setObstacles(obs);
+		if (size > ids.length) {
+			final int capacity = Math.max(size, ids.length + (ids.length >> 1));
+			ids = Arrays.copyOf(ids, capacity);
+			xs = Arrays.copyOf(xs, capacity);
+			ys = Arrays.copyOf(ys, capacity);
+			rows = Arrays.copyOf(rows, capacity);
+		}
+		for (int i = 0; i < size; i++) {
+			final INode<T> n = nodes.getNode(i);
+			final IPosition p = env.getPosition(n);
+			final double x = p.getCoordinate(0);
+			final double y = p.getCoordinate(1);
+			final int[] row = withLinks ? computeRow(env, n) : null;
+			changed = changed || ids[i] != n.getId() || xs[i] != x || ys[i] != y || !Arrays.equals(rows[i], row);
+			ids[i] = n.getId();
+			xs[i] = x;
+			ys[i] = y;
+			rows[i] = row;
+		}
+		Arrays.fill(rows, size, rows.length, null);
+		if (changed) {
+			version++;
+		}
+	}
+
+	/**
+	 * Reads the neighborhood of a node from the environment.
+	 * 
+	 * @param env
+	 *            the environment
+	 * @param node
+	 *            the node
+	 * @return the sorted indices of the neighbors
+	 */
+	int[] computeRow(final IEnvironment<T> env, final INode<T> node) {
+		final INeighborhood<T> neighborhood = env.getNeighborhood(node);
+		final int size = neighborhood.size();
+		if (size == 0) {
+			return NO_NEIGHBORS;
+		}
+		final int[] row = new int[size];
+		int k = 0;
+		for (final INode<T> n : neighborhood) {
+			final int j = index.indexOf(n);
+			if (j >= 0 && k < size) {
+				row[k++] = j;
+			}
+		}
+		Arrays.sort(row, 0, k);
+		return k == size ? row : Arrays.copyOf(row, k);
+	}
+
+	/**
+	 * Updates the position of a node.
+	 * 
+	 * @param i
+	 *            the node index
+	 * @param p
+	 *            the new position
+	 * @return true if the position actually changed
+	 */
+	boolean updatePosition(final int i, final IPosition p) {
+		final double x = p.getCoordinate(0);
+		final double y = p.getCoordinate(1);
+		if (x != xs[i] || y != ys[i]) {
+			xs[i] = x;
+			ys[i] = y;
+			version++;
+			return true;
+		}
+		return false;
+	}
+
+	void setObstacles(final List<? extends IObstacle2D> obs) {
+		obstacles = obs == null ? Collections.emptyList() : obs;
+	}
+
+	void setRow(final int i, final int[] row) {
+		if (!Arrays.equals(rows[i], row)) {
+			version++;
+		}
+		rows[i] = row;
+	}
+
+	boolean hasLinks() {
+		return links;
+	}
+
+	NodeIndex<T> getIndex() {
+		return index;
+	}
+
+	int[] getIds() {
+		return ids;
+	}
+
+	List<? extends IObstacle2D> getObstacles() {
+		return obstacles;
+	}
+
+	int[] getRow(final int i) {
+		return rows[i];
+	}
+
+	long getVersion() {
+		return version;
+	}
+
+	double[] getXs() {
+		return xs;
+	}
+
+	double[] getYs() {
+		return ys;
+	}
+
+}
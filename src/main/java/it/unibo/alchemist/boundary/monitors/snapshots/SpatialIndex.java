@@ -0,0 +1,290 @@
+/*
+ * Copyright (C) 2010-2015, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.monitors.snapshots;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
+/**
+ * A uniform grid over the node positions of an {@link EnvironmentSnapshot},
+ * in environment coordinates. Cells are square and sized so that each one
+ * holds a couple of nodes on average, so nearest node and radius queries
+ * only visit the few cells around the query point.
+ * 
+ * The grid is stored in compressed form: the nodes of cell c are the items in
+ * [cellStart[c], cellStart[c + 1]). Arrays are reused across builds.
+ */
+public final class SpatialIndex {
+
+	private static final int NODES_PER_CELL = 2;
+	private static final int MAX_CELLS = 1 << 22;
+
+	private double[] xs = new double[0];
+	private double[] ys = new double[0];
+	private int size;
+	private double minX, minY, cellSide = 1;
+	private int cols, rows;
+	private int[] cellStart = new int[1];
+	private int[] items = new int[0];
+	private int[] cellOf = new int[0];
+
+	/**
+	 * Builds the grid over the given coordinates. The arrays are referenced,
+	 * not copied: they must not change until the next build.
+	 * 
+	 * @param x
+	 *            the x coordinates
+	 * @param y
+	 *            the y coordinates
+	 * @param n
+	 *            the number of valid coordinates
+	 */
+	void build(final double[] x, final double[] y, final int n) {
+		xs = x;
+		ys = y;
+		size = n;
+		if (n == 0) {
+			cols = 0;
+			rows = 0;
+			return;
+		}
+		minX = Double.POSITIVE_INFINITY;
+		minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY;
+		double maxY = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < n; i++) {
+			minX = Math.min(minX, x[i]);
+			minY = Math.min(minY, y[i]);
+			maxX = Math.max(maxX, x[i]);
+			maxY = Math.max(maxY, y[i]);
+		}
+		final double width = maxX - minX;
+		final double height = maxY - minY;
+		final int cells = Math.min(MAX_CELLS, Math.max(1, n / NODES_PER_CELL));
+		if (width > 0 && height > 0) {
+			cellSide = Math.sqrt(width * height / cells);
+		} else if (width > 0 || height > 0) {
+			cellSide = Math.max(width, height) / cells;
+		} else {
+			cellSide = 1;
+		}
+		cols = (int) Math.min(cells, Math.max(1, Math.ceil(width / cellSide)));
+		rows = (int) Math.min(cells, Math.max(1, Math.ceil(height / cellSide)));
+		if ((long) cols * rows > MAX_CELLS) {
+			cellSide = Math.max(width / Math.sqrt(MAX_CELLS), height / Math.sqrt(MAX_CELLS));
+			cols = (int) Math.max(1, Math.ceil(width / cellSide));
+			rows = (int) Math.max(1, Math.ceil(height / cellSide));
+		}
+		final int cellCount = cols * rows;
+		if (cellStart.length < cellCount + 1) {
+			cellStart = new int[cellCount + 1];
+		} else {
+			Arrays.fill(cellStart, 0, cellCount + 1, 0);
+		}
+		if (items.length < n) {
+			items = new int[n];
+			cellOf = new int[n];
+		}
+		for (int i = 0; i < n; i++) {
+			final int c = cellRow(y[i]) * cols + cellCol(x[i]);
+			cellOf[i] = c;
+			cellStart[c + 1]++;
+		}
+		for (int c = 0; c < cellCount; c++) {
+			cellStart[c + 1] += cellStart[c];
+		}
+		for (int i = 0; i < n; i++) {
+			items[cellStart[cellOf[i]]++] = i;
+		}
+		/*
+		 * The scatter moved each start to the following cell's: shift back.
+		 */
+		for (int c = cellCount; c > 0; c--) {
+			cellStart[c] = cellStart[c - 1];
+		}
+		cellStart[0] = 0;
+	}
+
+	private int cellCol(final double x) {
+		return Math.max(0, Math.min(cols - 1, (int) ((x - minX) / cellSide)));
+	}
+
+	private int cellRow(final double y) {
+		return Math.max(0, Math.min(rows - 1, (int) ((y - minY) / cellSide)));
+	}
+
+	/**
+	 * @param x
+	 *            the x coordinate of the query point
+	 * @param y
+	 *            the y coordinate of the query point
+	 * @return the index of the node closest to the query point, or -1 if
+	 *         there are no nodes
+	 */
+	public int nearest(final double x, final double y) {
+		return nearest(x, y, Double.POSITIVE_INFINITY);
+	}
+
+	/**
+	 * @param x
+	 *            the x coordinate of the query point
+	 * @param y
+	 *            the y coordinate of the query point
+	 * @param maxDistance
+	 *            the maximum distance from the query point
+	 * @return the index of the node closest to the query point, or -1 if
+	 *         there are no nodes within maxDistance
+	 */
+	public int nearest(final double x, final double y, final double maxDistance) {
+		return nearest(x, y, maxDistance, i -> true);
+	}
+
+	/**
+	 * @param x
+	 *            the x coordinate of the query point
+	 * @param y
+	 *            the y coordinate of the query point
+	 * @param maxDistance
+	 *            the maximum distance from the query point
+	 * @param filter
+	 *            the nodes that can be returned
+	 * @return the index of the node closest to the query point among those
+	 *         accepted by the filter, or -1 if there are none within
+	 *         maxDistance
+	 */
+	public int nearest(final double x, final double y, final double maxDistance, final IntPredicate filter) {
+		if (size == 0) {
+			return -1;
+		}
+		final int cx = cellCol(x);
+		final int cy = cellRow(y);
+		final int maxRing = Math.max(Math.max(cx, cols - 1 - cx), Math.max(cy, rows - 1 - cy));
+		int best = -1;
+		double bestDistSq = maxDistance == Double.POSITIVE_INFINITY ? Double.POSITIVE_INFINITY : maxDistance * maxDistance;
+		for (int ring = 0; ring <= maxRing; ring++) {
+			/*
+			 * Cells in this ring are at least (ring - 1) cells away from
+			 * the query point.
+			 */
+			final double bound = Math.max(0, ring - 1) * cellSide;
+			if (bound * bound > bestDistSq) {
+				break;
+			}
+			final int x0 = cx - ring;
+			final int x1 = cx + ring;
+			final int y0 = Math.max(0, cy - ring);
+			final int y1 = Math.min(rows - 1, cy + ring);
+			for (int row = y0; row <= y1; row++) {
+				final boolean edge = row == cy - ring || row == cy + ring;
+				final int step = edge ? 1 : Math.max(1, x1 - x0);
+				for (int col = x0; col <= x1; col += step) {
+					if (col < 0 || col >= cols) {
+						continue;
+					}
+					final int c = row * cols + col;
+					for (int k = cellStart[c]; k < cellStart[c + 1]; k++) {
+						final int i = items[k];
+						final double dx = xs[i] - x;
+						final double dy = ys[i] - y;
+						final double d = dx * dx + dy * dy;
+						if (d <= bestDistSq && filter.test(i)) {
+							bestDistSq = d;
+							best = i;
+						}
+					}
+				}
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Visits every node within a given distance from a point.
+	 * 
+	 * @param x
+	 *            the x coordinate of the query point
+	 * @param y
+	 *            the y coordinate of the query point
+	 * @param radius
+	 *            the maximum distance from the query point
+	 * @param action
+	 *            what to do with the index of each node found
+	 */
+	public void forEachWithin(final double x, final double y, final double radius, final IntConsumer action) {
+		if (size == 0) {
+			return;
+		}
+		final double radiusSq = radius * radius;
+		final int x0 = cellCol(x - radius);
+		final int x1 = cellCol(x + radius);
+		final int y0 = cellRow(y - radius);
+		final int y1 = cellRow(y + radius);
+		for (int row = y0; row <= y1; row++) {
+			for (int c = row * cols + x0; c <= row * cols + x1; c++) {
+				for (int k = cellStart[c]; k < cellStart[c + 1]; k++) {
+					final int i = items[k];
+					final double dx = xs[i] - x;
+					final double dy = ys[i] - y;
+					if (dx * dx + dy * dy <= radiusSq) {
+						action.accept(i);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Collects the nodes inside an axis aligned rectangle.
+	 * 
+	 * @param minX
+	 *            the minimum x coordinate
+	 * @param minY
+	 *            the minimum y coordinate
+	 * @param maxX
+	 *            the maximum x coordinate
+	 * @param maxY
+	 *            the maximum y coordinate
+	 * @param dest
+	 *            where the indices of the nodes found are written. It must be
+	 *            able to hold {@link #size()} elements
+	 * @return the number of nodes found
+	 */
+	public int collectInside(final double minX, final double minY, final double maxX, final double maxY, final int[] dest) {
+		if (size == 0 || maxX < this.minX || maxY < this.minY) {
+			return 0;
+		}
+		int count = 0;
+		final int x0 = cellCol(minX);
+		final int x1 = cellCol(maxX);
+		final int y0 = cellRow(minY);
+		final int y1 = cellRow(maxY);
+		for (int row = y0; row <= y1; row++) {
+			for (int c = row * cols + x0; c <= row * cols + x1; c++) {
+				for (int k = cellStart[c]; k < cellStart[c + 1]; k++) {
+					final int i = items[k];
+					final double x = xs[i];
+					final double y = ys[i];
+					if (x >= minX && x <= maxX && y >= minY && y <= maxY) {
+						dest[count++] = i;
+					}
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @return the number of indexed nodes
+	 */
+	public int size() {
+		return size;
+	}
+
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2010-2015, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.monitors.snapshots;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Lock-free single producer, single consumer triple buffer. The producer
+ * always owns a back buffer it can freely write, the consumer always owns a
+ * front buffer it can freely read, and the third buffer sits in the middle
+ * holding the most recently published element. Neither side ever waits for
+ * the other: publishing swaps back and middle, acquiring swaps front and
+ * middle only if something new was published in the meanwhile.
+ * 
+ * @param <E>
+ *            the buffered element type
+ */
+public final class TripleBuffer<E> {
+
+	private static final int INDEX_MASK = 3;
+	private static final int FRESH = 4;
+
+	private final List<E> buffers;
+	/*
+	 * Bits 0-1: index of the middle buffer. Bit 2: middle buffer is fresh.
+	 */
+	private final AtomicInteger middle = new AtomicInteger(1);
+	private int back;
+	private int front = 2;
+
+	/**
+	 * @param factory
+	 *            used to build the three buffers
+	 */
+	public TripleBuffer(final Supplier<E> factory) {
+		Objects.requireNonNull(factory);
+		buffers = Collections.unmodifiableList(Arrays.asList(factory.get(), factory.get(), factory.get()));
+	}
+
+	/**
+	 * Producer side.
+	 * 
+	 * @return the buffer the producer is allowed to write
+	 */
+	public E getBackBuffer() {
+		return buffers.get(back);
+	}
+
+	/**
+	 * Producer side: makes the back buffer available to the consumer and
+	 * hands a new back buffer to the producer.
+	 */
+	public void publish() {
+		back = middle.getAndSet(back | FRESH) & INDEX_MASK;
+	}
+
+	/**
+	 * Consumer side: if something has been published since the last call,
+	 * moves it to the front.
+	 * 
+	 * @return the most recently published buffer
+	 */
+	public E acquireLatest() {
+		if ((middle.get() & FRESH) != 0) {
+			front = middle.getAndSet(front) & INDEX_MASK;
+		}
+		return buffers.get(front);
+	}
+
+	/**
+	 * @return true if the producer published a buffer that the consumer did
+	 *         not acquire yet
+	 */
+	public boolean hasFreshBuffer() {
+		return (middle.get() & FRESH) != 0;
+	}
+
+	/**
+	 * Producer side: the three buffers, in no particular order. Only the back
+	 * buffer may be written, the others may be concurrently read.
+	 * 
+	 * @return all the buffers
+	 */
+	public List<E> getBuffers() {
+		return buffers;
+	}
+
+}
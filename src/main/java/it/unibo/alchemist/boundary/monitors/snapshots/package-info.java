@@ -0,0 +1,6 @@
+/**
+ * This package contains the structures used by the 2D displays to capture the
+ * state of an environment on the simulation thread and hand it over to the
+ * painting code.
+ */
+package it.unibo.alchemist.boundary.monitors.snapshots;
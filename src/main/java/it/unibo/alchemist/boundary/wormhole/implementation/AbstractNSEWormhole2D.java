@@ -60,9 +60,28 @@ public abstract class AbstractNSEWormhole2D implements IWormhole2D {
 		originalOffset = new Point2D.Double(o.getX(), o.getY());
 	}
 
+	/**
+	 * Initializes a new instance with the same state of another one.
+	 * 
+	 * @param w
+	 *            the wormhole to copy
+	 */
+	protected AbstractNSEWormhole2D(final AbstractNSEWormhole2D w) {
+		viewSize = new DoubleDimension(w.viewSize.getWidth(), w.viewSize.getHeight());
+		envSize = new DoubleDimension(w.envSize.getWidth(), w.envSize.getHeight());
+		position = new Point2D.Double(w.position.getX(), w.position.getY());
+		offset = new Point2D.Double(w.offset.getX(), w.offset.getY());
+		originalOffset = new Point2D.Double(w.originalOffset.getX(), w.originalOffset.getY());
+		zoom = w.zoom;
+		angle = w.angle;
+		hRate = w.hRate;
+		vRate = w.vRate;
+		mode = w.mode;
+	}
+
 	@Override
 	public Point2D getEnvOffset() {
-		return offset;
+		return (Point2D) offset.clone();
 	}
 
 	@Override
@@ -152,22 +171,31 @@ public abstract class AbstractNSEWormhole2D implements IWormhole2D {
 		return zoom;
 	}
 
+	/**
+	 * Called whenever the zoom, position, rotation, stretch or size of the
+	 * wormhole changes. Subclasses caching anything derived from them must
+	 * discard it here.
+	 */
+	protected void invalidate() {
+	}
+
 	@Override
 	public boolean isInsideView(final Point2D viewPoint) {
 		final double x = viewPoint.getX();
 		final double y = viewPoint.getY();
-		final Dimension2D vs = getViewSize();
-		return x >= 0 && x <= vs.getWidth() && y >= 0 && y <= vs.getHeight();
+		return x >= 0 && x <= viewSize.getWidth() && y >= 0 && y <= viewSize.getHeight();
 	}
 
 	@Override
 	public void setDeltaViewPosition(final Point2D delta) {
 		position = NSEAlg2DHelper.sum(position, delta);
+		invalidate();
 	}
 
 	@Override
 	public void setEnvOffset(final Point2D point) {
 		offset = new Point2D.Double(point.getX(), point.getY());
+		invalidate();
 	}
 
 	@Override
@@ -188,6 +216,7 @@ public abstract class AbstractNSEWormhole2D implements IWormhole2D {
 	@Override
 	public void setEnvSize(final Dimension2D size) {
 		envSize = new DoubleDimension(size);
+		invalidate();
 	}
 
 	@Override
@@ -199,6 +228,7 @@ public abstract class AbstractNSEWormhole2D implements IWormhole2D {
 		} else {
 			hRate = value;
 		}
+		invalidate();
 	}
 
 	/**
@@ -213,6 +243,7 @@ public abstract class AbstractNSEWormhole2D implements IWormhole2D {
 			vRate = getNIVerticalRatio();
 			hRate = getNIHorizontalRatio();
 		}
+		invalidate();
 	}
 
 	@Override
@@ -222,17 +253,19 @@ public abstract class AbstractNSEWormhole2D implements IWormhole2D {
 		} else {
 			zoom = viewSize.getWidth() / envSize.getWidth();
 		}
-
+		invalidate();
 	}
 
 	@Override
 	public void setRotation(final double rad) {
 		angle = rad % NSEAlg2DHelper.PI2;
+		invalidate();
 	}
 
 	@Override
 	public void setViewPosition(final Point2D point) {
 		position = new Point2D.Double(point.getX(), point.getY());
+		invalidate();
 	}
 
 	/**
@@ -245,11 +278,13 @@ public abstract class AbstractNSEWormhole2D implements IWormhole2D {
 		final Point2D envDelta = NSEAlg2DHelper.variation(getEnvPoint(new Point2D.Double(viewPoint.getX(), viewPoint.getY())), getEnvPoint(position));
 		position = new Point2D.Double(viewPoint.getX(), viewPoint.getY());
 		offset = NSEAlg2DHelper.sum(offset, envDelta);
+		invalidate();
 	}
 
 	@Override
 	public void setViewSize(final Dimension2D size) {
 		viewSize = new DoubleDimension(size.getWidth(), size.getHeight());
+		invalidate();
 	}
 
 	@Override
@@ -261,6 +296,7 @@ public abstract class AbstractNSEWormhole2D implements IWormhole2D {
 		} else {
 			vRate = value;
 		}
+		invalidate();
 	}
 
 	@Override
@@ -269,5 +305,6 @@ public abstract class AbstractNSEWormhole2D implements IWormhole2D {
 			zoom = 0d;
 		}
 		zoom = value;
+		invalidate();
 	}
 }
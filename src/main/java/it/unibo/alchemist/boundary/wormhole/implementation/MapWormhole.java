@@ -52,6 +52,20 @@ public class MapWormhole extends AbstractNSEWormhole2D {
 		return new Point2D.Double(MercatorProjection.pixelXToLongitude(p.getX(), mapModel.getMapViewPosition().getZoomLevel()), MercatorProjection.pixelYToLatitude(p.getY(), mapModel.getMapViewPosition().getZoomLevel()));
 	}
 
+	@Override
+	public void getEnvPoints(final double[] viewPoints, final int srcOffset, final double[] envPoints, final int dstOffset, final int count) {
+		final LatLong l = mapModel.getMapViewPosition().getCenter();
+		final byte zoom = mapModel.getMapViewPosition().getZoomLevel();
+		final double dx = MercatorProjection.longitudeToPixelX(l.getLongitude(), zoom) - getViewSize().getWidth() / 2;
+		final double dy = MercatorProjection.latitudeToPixelY(l.getLatitude(), zoom) - getViewSize().getHeight() / 2;
+		for (int i = 0; i < 2 * count; i += 2) {
+			final double x = viewPoints[srcOffset + i];
+			final double y = viewPoints[srcOffset + i + 1];
+			envPoints[dstOffset + i] = MercatorProjection.pixelXToLongitude(x + dx, zoom);
+			envPoints[dstOffset + i + 1] = MercatorProjection.pixelYToLatitude(y + dy, zoom);
+		}
+	}
+
 	@Override
 	public Point2D getEnvPosition() {
 		final LatLong c = mapModel.getMapViewPosition().getCenter();
@@ -68,6 +82,20 @@ public class MapWormhole extends AbstractNSEWormhole2D {
 		return new Point2D.Double(vc.getX() + d.getX(), vc.getY() + d.getY());
 	}
 
+	@Override
+	public void getViewPoints(final double[] envPoints, final int srcOffset, final double[] viewPoints, final int dstOffset, final int count) {
+		final LatLong l = mapModel.getMapViewPosition().getCenter();
+		final byte zoom = mapModel.getMapViewPosition().getZoomLevel();
+		final double dx = getViewSize().getWidth() / 2 - MercatorProjection.longitudeToPixelX(l.getLongitude(), zoom);
+		final double dy = getViewSize().getHeight() / 2 - MercatorProjection.latitudeToPixelY(l.getLatitude(), zoom);
+		for (int i = 0; i < 2 * count; i += 2) {
+			final double x = envPoints[srcOffset + i];
+			final double y = envPoints[srcOffset + i + 1];
+			viewPoints[dstOffset + i] = MercatorProjection.longitudeToPixelX(x, zoom) + dx;
+			viewPoints[dstOffset + i + 1] = MercatorProjection.latitudeToPixelY(y, zoom) + dy;
+		}
+	}
+
 	@Override
 	public Point2D getViewPosition() {
 		return new Point2D.Double(getViewSize().getWidth() / 2, getViewSize().getHeight() / 2);
@@ -24,6 +24,13 @@ import java.awt.geom.Point2D;
  */
 public class NSEWormhole extends AbstractNSEWormhole2D {
 
+	/*
+	 * Env-space to view-space and back, offset included. Built on first use
+	 * and dropped whenever the wormhole changes.
+	 */
+	private AffineTransform envToView;
+	private AffineTransform viewToEnv;
+
 	/**
 	 * Initializes a new <code>NSEWormhole2D</code> instance directly setting
 	 * the size of both view and environment, and the offset too.
@@ -41,6 +48,17 @@ public class NSEWormhole extends AbstractNSEWormhole2D {
 		super(viewSize, envSize, offset);
 	}
 
+	/**
+	 * Initializes a new <code>NSEWormhole2D</code> with the same state of
+	 * another one. Later changes to either do not affect the other.
+	 * 
+	 * @param w
+	 *            the wormhole to copy
+	 */
+	public NSEWormhole(final NSEWormhole w) {
+		super(w);
+	}
+
 	/**
 	 * Calculates the {@link AffineTransform} that allows the wormhole to
 	 * convert points from env-space to view-space.
@@ -58,24 +76,57 @@ public class NSEWormhole extends AbstractNSEWormhole2D {
 		return t;
 	}
 
-	@Override
-	public Point2D getEnvPoint(final Point2D viewPoint) {
-		final Point2D vp = new Point2D.Double(viewPoint.getX(), viewPoint.getY());
+	private void computeTransforms() {
 		final AffineTransform t = calculateTransform();
+		final Point2D offset = getEnvOffset();
+		t.translate(-offset.getX(), -offset.getY());
+		AffineTransform inverse;
 		try {
-			t.inverseTransform(vp, vp);
+			inverse = t.createInverse();
 		} catch (final NoninvertibleTransformException e) {
 			L.error(e.getMessage());
+			inverse = AffineTransform.getTranslateInstance(offset.getX(), offset.getY());
+		}
+		envToView = t;
+		viewToEnv = inverse;
+	}
+
+	@Override
+	public Point2D getEnvPoint(final Point2D viewPoint) {
+		if (viewToEnv == null) {
+			computeTransforms();
 		}
-		return NSEAlg2DHelper.sum(vp, getEnvOffset());
+		return viewToEnv.transform(viewPoint, new Point2D.Double());
+	}
+
+	@Override
+	public void getEnvPoints(final double[] viewPoints, final int srcOffset, final double[] envPoints, final int dstOffset, final int count) {
+		if (viewToEnv == null) {
+			computeTransforms();
+		}
+		viewToEnv.transform(viewPoints, srcOffset, envPoints, dstOffset, count);
 	}
 
 	@Override
 	public Point2D getViewPoint(final Point2D envPoint) {
-		final Point2D ep = NSEAlg2DHelper.subtract(envPoint, getEnvOffset());
-		final AffineTransform t = calculateTransform();
-		t.transform(ep, ep);
-		return ep;
+		if (envToView == null) {
+			computeTransforms();
+		}
+		return envToView.transform(envPoint, new Point2D.Double());
+	}
+
+	@Override
+	public void getViewPoints(final double[] envPoints, final int srcOffset, final double[] viewPoints, final int dstOffset, final int count) {
+		if (envToView == null) {
+			computeTransforms();
+		}
+		envToView.transform(envPoints, srcOffset, viewPoints, dstOffset, count);
+	}
+
+	@Override
+	protected void invalidate() {
+		envToView = null;
+		viewToEnv = null;
 	}
 
 	@Override
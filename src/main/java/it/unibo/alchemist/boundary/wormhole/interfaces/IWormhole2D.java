@@ -83,6 +83,34 @@ public interface IWormhole2D {
 	 */
 	Point2D getEnvPoint(Point2D viewPoint);
 
+	/**
+	 * Converts many points from the view-space to the env-space at once.
+	 * Points are stored as interleaved (x, y) coordinates. Source and
+	 * destination may be the same array. By default, each point is
+	 * converted with {@link #getEnvPoint(Point2D)}: implementations should
+	 * override it with a faster bulk conversion.
+	 * 
+	 * @param viewPoints
+	 *            the coordinates of the points into the view-space
+	 * @param srcOffset
+	 *            the position of the first coordinate to convert
+	 * @param envPoints
+	 *            where the coordinates into the env-space are written
+	 * @param dstOffset
+	 *            the position of the first coordinate to write
+	 * @param count
+	 *            the number of points to convert
+	 */
+	default void getEnvPoints(final double[] viewPoints, final int srcOffset, final double[] envPoints, final int dstOffset, final int count) {
+		final Point2D.Double p = new Point2D.Double();
+		for (int i = 0; i < count; i++) {
+			p.setLocation(viewPoints[srcOffset + 2 * i], viewPoints[srcOffset + 2 * i + 1]);
+			final Point2D e = getEnvPoint(p);
+			envPoints[dstOffset + 2 * i] = e.getX();
+			envPoints[dstOffset + 2 * i + 1] = e.getY();
+		}
+	}
+
 	/**
 	 * Converts the Position into env-coordinates.
 	 * 
@@ -158,6 +186,34 @@ public interface IWormhole2D {
 	 */
 	Point2D getViewPoint(Point2D envPoint);
 
+	/**
+	 * Converts many points from the env-space to the view-space at once.
+	 * Points are stored as interleaved (x, y) coordinates. Source and
+	 * destination may be the same array. By default, each point is
+	 * converted with {@link #getViewPoint(Point2D)}: implementations should
+	 * override it with a faster bulk conversion.
+	 * 
+	 * @param envPoints
+	 *            the coordinates of the points into the env-space
+	 * @param srcOffset
+	 *            the position of the first coordinate to convert
+	 * @param viewPoints
+	 *            where the coordinates into the view-space are written
+	 * @param dstOffset
+	 *            the position of the first coordinate to write
+	 * @param count
+	 *            the number of points to convert
+	 */
+	default void getViewPoints(final double[] envPoints, final int srcOffset, final double[] viewPoints, final int dstOffset, final int count) {
+		final Point2D.Double p = new Point2D.Double();
+		for (int i = 0; i < count; i++) {
+			p.setLocation(envPoints[srcOffset + 2 * i], envPoints[srcOffset + 2 * i + 1]);
+			final Point2D v = getViewPoint(p);
+			viewPoints[dstOffset + 2 * i] = v.getX();
+			viewPoints[dstOffset + 2 * i + 1] = v.getY();
+		}
+	}
+
 	/**
 	 * Gets the Position.
 	 * 
@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2010-2015, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.gui.effects;
+
+import static org.junit.Assert.assertEquals;
+
+import it.unibo.alchemist.boundary.gui.effects.DrawShape.Mode;
+import it.unibo.alchemist.model.interfaces.INode;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import org.danilopianini.lang.RangedInteger;
+import org.junit.Test;
+
+/**
+ * Checks that stamping sprites draws the same pixels as drawing each glyph.
+ */
+public class TestDrawShape {
+
+	private static final int SIZE = 200;
+	private static final int NODES = 300;
+	private static final int[] SIDES = { 0, 1, 2, 3, 5, 8, 13, 30 };
+	private static final int[] ALPHAS = { 255, 128, 37 };
+	private static final int[] SCALES = { 10, 50, 90 };
+	private static final int MAX_COLOUR_VALUE = 255;
+
+	/**
+	 * Every mode, size, proportion and alpha, with overlapping and clipped
+	 * nodes, gives the same image with and without sprites, with and without
+	 * antialiasing.
+	 */
+	@Test
+	public void testStampsMatchGlyphs() {
+		final NodeBatch batch = randomBatch(new Random(1));
+		for (final boolean aa : new boolean[] { false, true }) {
+			for (final Mode m : Mode.values()) {
+				for (final int side : SIDES) {
+					for (final int scale : SCALES) {
+						for (final int a : ALPHAS) {
+							final DrawShape effect = new DrawShape();
+							effect.setMode(m);
+							effect.setSize(new RangedInteger(0, 100, side));
+							effect.setScaleFactor(new RangedInteger(0, 100, scale));
+							effect.setRed(new RangedInteger(0, MAX_COLOUR_VALUE, 200));
+							effect.setGreen(new RangedInteger(0, MAX_COLOUR_VALUE, 60));
+							effect.setBlue(new RangedInteger(0, MAX_COLOUR_VALUE, 10));
+							effect.setAlpha(new RangedInteger(0, MAX_COLOUR_VALUE, a));
+							assertSameImage(m + " " + side + " scale " + scale + " alpha " + a + " antialiasing " + aa,
+									render(effect, batch, false, aa), render(effect, batch, true, aa));
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Stamping twice from the same atlas gives the same image.
+	 */
+	@Test
+	public void testCachedStamps() {
+		final NodeBatch batch = randomBatch(new Random(2));
+		final DrawShape effect = new DrawShape();
+		effect.setAlpha(new RangedInteger(0, MAX_COLOUR_VALUE, 100));
+		assertSameImage("second frame", render(effect, batch, true, false), render(effect, batch, true, false));
+	}
+
+	private static BufferedImage render(final DrawShape effect, final NodeBatch batch, final boolean sprites, final boolean aa) {
+		final BufferedImage image = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_RGB);
+		final Graphics2D g = image.createGraphics();
+		g.setColor(Color.WHITE);
+		g.fillRect(0, 0, SIZE, SIZE);
+		g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, aa ? RenderingHints.VALUE_ANTIALIAS_ON : RenderingHints.VALUE_ANTIALIAS_OFF);
+		g.setRenderingHint(SpriteAtlas.KEY_SPRITES, sprites ? SpriteAtlas.VALUE_SPRITES_ON : SpriteAtlas.VALUE_SPRITES_OFF);
+		effect.apply(g, batch);
+		g.dispose();
+		return image;
+	}
+
+	/*
+	 * Nodes on fractional positions, some of them partly off screen.
+	 */
+	private static NodeBatch randomBatch(final Random rng) {
+		final double[] xs = rng.doubles(NODES, -10, SIZE + 10).toArray();
+		final double[] ys = rng.doubles(NODES, -10, SIZE + 10).toArray();
+		return new NodeBatch() {
+			@Override
+			public INode<?> getNode(final int k) {
+				return null;
+			}
+			@Override
+			public int getSnapshotIndex(final int k) {
+				return k;
+			}
+			@Override
+			public double getViewX(final int k) {
+				return xs[k];
+			}
+			@Override
+			public double getViewY(final int k) {
+				return ys[k];
+			}
+			@Override
+			public int size() {
+				return NODES;
+			}
+		};
+	}
+
+	private static void assertSameImage(final String message, final BufferedImage expected, final BufferedImage actual) {
+		for (int y = 0; y < SIZE; y++) {
+			for (int x = 0; x < SIZE; x++) {
+				assertEquals(message + " at " + x + "," + y, expected.getRGB(x, y), actual.getRGB(x, y));
+			}
+		}
+	}
+
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2010-2015, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.gui.effects;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Compares the pixels a canvas writes with those Java2D draws.
+ */
+public class TestPixelCanvas {
+
+	private static final int SIZE = 64;
+	private static final int COLORS = 2000;
+	private static final int MAX_SIDE = 20;
+	private static final int RGB_MASK = 0xFFFFFF;
+
+	private final Random rng = new Random(1);
+
+	/**
+	 * Only opaque integer RGB images are supported.
+	 */
+	@Test
+	public void testSupportedImages() {
+		assertNotNull(PixelCanvas.of(new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB)));
+		assertNull(PixelCanvas.of(new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB)));
+		assertNull(PixelCanvas.of(new BufferedImage(1, 1, BufferedImage.TYPE_3BYTE_BGR)));
+		assertNull(PixelCanvas.of(null));
+	}
+
+	/**
+	 * Translucent colors blended on a pixel give the same result as Java2D
+	 * filling it, which rounds each product of the blend separately.
+	 */
+	@Test
+	public void testBlendMatchesJava2D() {
+		final BufferedImage expected = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+		final BufferedImage actual = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+		final PixelCanvas canvas = PixelCanvas.of(actual);
+		for (int i = 0; i < COLORS; i++) {
+			final int background = rng.nextInt() & RGB_MASK;
+			final int argb = rng.nextInt();
+			expected.setRGB(0, 0, background);
+			actual.setRGB(0, 0, background);
+			final Graphics2D g = expected.createGraphics();
+			g.setColor(new Color(argb, true));
+			g.fillRect(0, 0, 1, 1);
+			g.dispose();
+			canvas.blendPixel(0, 0, argb);
+			assertEquals(Integer.toHexString(argb) + " on " + Integer.toHexString(background),
+					expected.getRGB(0, 0), actual.getRGB(0, 0));
+		}
+	}
+
+	/**
+	 * Every alpha, including the fully transparent and opaque ones, blends as
+	 * in Java2D.
+	 */
+	@Test
+	public void testEveryAlpha() {
+		final BufferedImage expected = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+		final BufferedImage actual = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+		final PixelCanvas canvas = PixelCanvas.of(actual);
+		for (int alpha = 0; alpha <= 0xFF; alpha++) {
+			final int background = rng.nextInt() & RGB_MASK;
+			final int argb = alpha << 24 | rng.nextInt() & RGB_MASK;
+			expected.setRGB(0, 0, background);
+			actual.setRGB(0, 0, background);
+			final Graphics2D g = expected.createGraphics();
+			g.setColor(new Color(argb, true));
+			g.fillRect(0, 0, 1, 1);
+			g.dispose();
+			canvas.fillRect(0, 0, 1, 1, argb);
+			assertEquals("alpha " + alpha, expected.getRGB(0, 0), actual.getRGB(0, 0));
+		}
+	}
+
+	/**
+	 * Rectangles cover the same pixels as in Java2D, also when clipped.
+	 */
+	@Test
+	public void testFillRect() {
+		for (int i = 0; i < COLORS; i++) {
+			final int x = rng.nextInt(SIZE + MAX_SIDE) - MAX_SIDE;
+			final int y = rng.nextInt(SIZE + MAX_SIDE) - MAX_SIDE;
+			final int w = rng.nextInt(MAX_SIDE);
+			final int h = rng.nextInt(MAX_SIDE);
+			final BufferedImage expected = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_RGB);
+			final BufferedImage actual = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_RGB);
+			final Graphics2D g = expected.createGraphics();
+			g.setColor(Color.WHITE);
+			g.fillRect(x, y, w, h);
+			g.dispose();
+			PixelCanvas.of(actual).fillRect(x, y, w, h, Color.WHITE.getRGB());
+			assertSameImage(expected, actual);
+		}
+	}
+
+	/**
+	 * Ellipses cover exactly the pixels whose center is inside them, also
+	 * when clipped, and thin ones are filled as rectangles.
+	 */
+	@Test
+	public void testFillEllipse() {
+		final int white = Color.WHITE.getRGB();
+		for (int i = 0; i < COLORS; i++) {
+			final int x = rng.nextInt(SIZE + MAX_SIDE) - MAX_SIDE;
+			final int y = rng.nextInt(SIZE + MAX_SIDE) - MAX_SIDE;
+			final int w = rng.nextInt(MAX_SIDE);
+			final int h = rng.nextInt(MAX_SIDE);
+			final BufferedImage image = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_RGB);
+			PixelCanvas.of(image).fillEllipse(x, y, w, h, white);
+			for (int py = 0; py < SIZE; py++) {
+				for (int px = 0; px < SIZE; px++) {
+					final boolean inside;
+					if (w <= 1 || h <= 1) {
+						inside = px >= x && px < x + Math.max(1, w) && py >= y && py < y + Math.max(1, h);
+					} else {
+						final double dx = (px + 0.5 - x - w / 2d) / (w / 2d);
+						final double dy = (py + 0.5 - y - h / 2d) / (h / 2d);
+						inside = dx * dx + dy * dy <= 1;
+					}
+					assertEquals(x + "," + y + " " + w + "x" + h + " at " + px + "," + py,
+							inside ? white : Color.BLACK.getRGB(), image.getRGB(px, py));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Ellipses of different sizes drawn in sequence do not share their
+	 * spans.
+	 */
+	@Test
+	public void testEllipseSizesInSequence() {
+		final int white = Color.WHITE.getRGB();
+		final BufferedImage sequence = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_RGB);
+		final PixelCanvas canvas = PixelCanvas.of(sequence);
+		canvas.fillEllipse(0, 0, MAX_SIDE, MAX_SIDE, white);
+		canvas.fillEllipse(SIZE / 2, SIZE / 2, MAX_SIDE / 2, MAX_SIDE / 4, white);
+		final BufferedImage separate = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_RGB);
+		PixelCanvas.of(separate).fillEllipse(0, 0, MAX_SIDE, MAX_SIDE, white);
+		PixelCanvas.of(separate).fillEllipse(SIZE / 2, SIZE / 2, MAX_SIDE / 2, MAX_SIDE / 4, white);
+		assertSameImage(separate, sequence);
+	}
+
+	/**
+	 * Fully transparent colors leave the image untouched.
+	 */
+	@Test
+	public void testTransparent() {
+		final BufferedImage image = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_RGB);
+		final PixelCanvas canvas = PixelCanvas.of(image);
+		canvas.fillRect(0, 0, SIZE, SIZE, 0x00FFFFFF);
+		canvas.fillEllipse(0, 0, SIZE, SIZE, 0x00FFFFFF);
+		canvas.blendPixel(0, 0, 0x00FFFFFF);
+		assertSameImage(new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_RGB), image);
+	}
+
+	private static void assertSameImage(final BufferedImage expected, final BufferedImage actual) {
+		for (int y = 0; y < expected.getHeight(); y++) {
+			for (int x = 0; x < expected.getWidth(); x++) {
+				assertEquals(x + "," + y, expected.getRGB(x, y), actual.getRGB(x, y));
+			}
+		}
+	}
+
+}
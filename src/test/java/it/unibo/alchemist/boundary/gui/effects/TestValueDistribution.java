@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2010-2015, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.gui.effects;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks the range and the quantiles of distributions.
+ */
+public class TestValueDistribution {
+
+	private static final int SMALL = 101;
+	private static final int LARGE = 1000000;
+	private static final double[] QUANTILES = { 0.01, 0.05, 0.25, 0.5, 0.75, 0.95, 0.99 };
+	/*
+	 * A sample of 4096 values estimates quantiles of a uniform distribution
+	 * within about 1.5%: far from a sample taken from a part of the values.
+	 */
+	private static final double TOLERANCE = 0.03;
+
+	/**
+	 * With fewer values than the sample size, quantiles interpolate between
+	 * the exact sorted values.
+	 */
+	@Test
+	public void testExactQuantiles() {
+		final ValueDistribution d = ValueDistribution.of(i -> SMALL - 1 - i, SMALL, false);
+		assertEquals(SMALL, d.getCount());
+		assertEquals(0, d.getMin(), 0);
+		assertEquals(SMALL - 1, d.getMax(), 0);
+		assertEquals(0, d.quantile(0), 0);
+		assertEquals(SMALL - 1, d.quantile(1), 0);
+		assertEquals(50, d.quantile(0.5), 0);
+		assertEquals(25, d.quantile(0.25), 0);
+		assertEquals(12.5, d.quantile(0.125), 1e-9);
+		assertEquals(0, d.quantile(-1), 0);
+		assertEquals(SMALL - 1, d.quantile(2), 0);
+	}
+
+	/**
+	 * Quantiles are increasing with q, and within the range.
+	 */
+	@Test
+	public void testMonotone() {
+		final Random rng = new Random(1);
+		final double[] values = rng.doubles(LARGE).map(v -> v * v * 1000).toArray();
+		final ValueDistribution d = ValueDistribution.of(i -> values[i], LARGE, true);
+		double previous = d.getMin();
+		for (double q = 0; q <= 1; q += 0.001) {
+			final double v = d.quantile(q);
+			assertTrue(v >= previous);
+			assertTrue(v <= d.getMax());
+			previous = v;
+		}
+	}
+
+	/**
+	 * On large inputs, the sample spans all the values: sorted values, whose
+	 * last ones would be missed by a sample that stopped early, still give
+	 * accurate quantiles. The range is exact, sequential or parallel.
+	 */
+	@Test
+	public void testLargeQuantiles() {
+		for (final boolean parallel : new boolean[] { false, true }) {
+			final ValueDistribution d = ValueDistribution.of(i -> i, LARGE, parallel);
+			assertEquals(LARGE, d.getCount());
+			assertEquals(0, d.getMin(), 0);
+			assertEquals(LARGE - 1, d.getMax(), 0);
+			for (final double q : QUANTILES) {
+				assertEquals("quantile " + q, q, d.quantile(q) / LARGE, TOLERANCE);
+			}
+		}
+	}
+
+	/**
+	 * Random values give quantiles close to those of the full sorted data.
+	 */
+	@Test
+	public void testRandomQuantiles() {
+		final Random rng = new Random(2);
+		final double[] values = rng.doubles(LARGE).toArray();
+		final ValueDistribution d = ValueDistribution.of(i -> values[i], LARGE, true);
+		final double[] sorted = values.clone();
+		Arrays.sort(sorted);
+		for (final double q : QUANTILES) {
+			assertEquals("quantile " + q, sorted[(int) (q * (LARGE - 1))], d.quantile(q), TOLERANCE);
+		}
+	}
+
+	/**
+	 * Non finite values are ignored, and no values give NaN.
+	 */
+	@Test
+	public void testNonFinite() {
+		final double[] values = { Double.NaN, 1, Double.POSITIVE_INFINITY, 3, Double.NEGATIVE_INFINITY };
+		final ValueDistribution d = ValueDistribution.of(i -> values[i], values.length, false);
+		assertEquals(2, d.getCount());
+		assertEquals(1, d.getMin(), 0);
+		assertEquals(3, d.getMax(), 0);
+		assertEquals(2, d.quantile(0.5), 0);
+		final ValueDistribution none = ValueDistribution.of(i -> Double.NaN, values.length, false);
+		assertEquals(0, none.getCount());
+		assertTrue(Double.isNaN(none.quantile(0.5)));
+		assertTrue(Double.isNaN(none.getMin()));
+	}
+
+}
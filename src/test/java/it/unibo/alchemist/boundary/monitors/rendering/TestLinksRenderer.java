@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2010-2015, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.monitors.rendering;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import it.unibo.alchemist.boundary.monitors.snapshots.EnvironmentSampler;
+import it.unibo.alchemist.boundary.monitors.snapshots.EnvironmentSnapshot;
+import it.unibo.alchemist.boundary.monitors.snapshots.MockEnvironment;
+import it.unibo.alchemist.model.interfaces.INode;
+
+import java.awt.BasicStroke;
+import java.awt.Graphics2D;
+import java.awt.Shape;
+import java.awt.Stroke;
+import java.awt.geom.PathIterator;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Checks which links are drawn, recording the segments of the paths the
+ * renderer strokes.
+ */
+public class TestLinksRenderer {
+
+	private static final int SIZE = 100;
+	private static final int CHAIN = 40;
+	private static final int BUDGET = CHAIN / 2;
+
+	/**
+	 * A link listed by both its ends is drawn once, and a link listed by one
+	 * end only is drawn too.
+	 */
+	@Test
+	public void testEachLinkOnce() {
+		final MockEnvironment env = new MockEnvironment();
+		final INode<Object> a = env.addNode(10, 10);
+		final INode<Object> b = env.addNode(20, 10);
+		final INode<Object> c = env.addNode(20, 20);
+		env.linkBoth(a, b);
+		env.link(c, a);
+		final List<String> drawn = draw(new LinksRenderer(), env, SIZE);
+		assertEquals(2, drawn.size());
+		assertEquals(2, new HashSet<>(drawn).size());
+	}
+
+	/**
+	 * Links entirely outside the view are skipped, links crossing it are
+	 * drawn.
+	 */
+	@Test
+	public void testCulling() {
+		final MockEnvironment env = new MockEnvironment();
+		final INode<Object> in = env.addNode(10, 10);
+		final INode<Object> left = env.addNode(-10, 50);
+		final INode<Object> right = env.addNode(SIZE + 10, 50);
+		final INode<Object> far = env.addNode(-10, -10);
+		final INode<Object> farther = env.addNode(-20, -10);
+		env.linkBoth(in, far);
+		env.linkBoth(left, right);
+		env.linkBoth(far, farther);
+		assertEquals(2, draw(new LinksRenderer(), env, SIZE).size());
+	}
+
+	/**
+	 * With more links than the budget, at most the budget is drawn, whether
+	 * links are listed by both ends or by one only.
+	 */
+	@Test
+	public void testBudget() {
+		for (final boolean symmetric : new boolean[] { true, false }) {
+			final MockEnvironment env = chain(symmetric);
+			final LinksRenderer renderer = new LinksRenderer();
+			renderer.setBudget(BUDGET);
+			final List<String> drawn = draw(renderer, env, SIZE);
+			assertTrue(drawn.size() + " links drawn", drawn.size() <= BUDGET);
+			assertTrue(drawn.size() + " links drawn", drawn.size() >= BUDGET / 2);
+			renderer.setBudget(CHAIN);
+			assertEquals(CHAIN - 1, draw(renderer, env, SIZE).size());
+		}
+	}
+
+	/*
+	 * Nodes along a line, each linked to the next.
+	 */
+	private static MockEnvironment chain(final boolean symmetric) {
+		final MockEnvironment env = new MockEnvironment();
+		INode<Object> previous = null;
+		for (int i = 0; i < CHAIN; i++) {
+			final INode<Object> node = env.addNode(i * 2, i % 2 == 0 ? 1 : 3);
+			if (previous != null) {
+				if (symmetric) {
+					env.linkBoth(previous, node);
+				} else {
+					env.link(previous, node);
+				}
+			}
+			previous = node;
+		}
+		return env;
+	}
+
+	/*
+	 * Draws the links with view coordinates equal to the environment ones,
+	 * and returns the segments stroked.
+	 */
+	private static List<String> draw(final LinksRenderer renderer, final MockEnvironment env, final int size) {
+		final EnvironmentSampler<Object> sampler = new EnvironmentSampler<>();
+		sampler.setCollectLinks(true);
+		sampler.sample(env.getEnvironment(), null);
+		final EnvironmentSnapshot<Object> frame = sampler.acquireLatest();
+		final double[] view = new double[2 * frame.size()];
+		for (int i = 0; i < frame.size(); i++) {
+			view[2 * i] = frame.getX(i);
+			view[2 * i + 1] = frame.getY(i);
+		}
+		final RecordingStroke stroke = new RecordingStroke();
+		final Graphics2D g = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB).createGraphics();
+		try {
+			g.setStroke(stroke);
+			renderer.draw(g, frame, view, size, size);
+		} finally {
+			g.dispose();
+		}
+		return stroke.segments;
+	}
+
+	/**
+	 * Records the segments of the shapes it strokes, as undirected pairs of
+	 * points.
+	 */
+	private static final class RecordingStroke implements Stroke {
+		private final Stroke delegate = new BasicStroke();
+		private final List<String> segments = new ArrayList<>();
+
+		@Override
+		public Shape createStrokedShape(final Shape shape) {
+			final double[] coords = new double[6];
+			final double[] start = new double[2];
+			for (final PathIterator it = shape.getPathIterator(null); !it.isDone(); it.next()) {
+				if (it.currentSegment(coords) == PathIterator.SEG_MOVETO) {
+					start[0] = coords[0];
+					start[1] = coords[1];
+				} else {
+					final Set<String> ends = new HashSet<>();
+					ends.add(start[0] + "," + start[1]);
+					ends.add(coords[0] + "," + coords[1]);
+					segments.add(ends.toString());
+				}
+			}
+			return delegate.createStrokedShape(shape);
+		}
+	}
+
+}
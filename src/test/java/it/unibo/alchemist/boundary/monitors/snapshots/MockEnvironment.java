@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2010-2015, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.monitors.snapshots;
+
+import it.unibo.alchemist.model.interfaces.IEnvironment;
+import it.unibo.alchemist.model.interfaces.INeighborhood;
+import it.unibo.alchemist.model.interfaces.INode;
+import it.unibo.alchemist.model.interfaces.IPosition;
+import it.unibo.alchemist.model.interfaces.IReaction;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A two dimensional environment whose nodes, positions and neighborhoods are
+ * set by hand. Neighborhoods are not necessarily symmetric. The environment,
+ * its nodes and reactions are dynamic proxies implementing only the methods
+ * the display pipeline reads: any other call fails.
+ */
+public final class MockEnvironment {
+
+	private final Map<INode<Object>, double[]> positions = new LinkedHashMap<>();
+	private final Map<INode<Object>, List<INode<Object>>> neighbors = new IdentityHashMap<>();
+	private final IEnvironment<Object> environment = proxy(IEnvironment.class, (p, m, args) -> {
+		switch (m.getName()) {
+		case "getPosition":
+			return position(positions.get(args[0]));
+		case "getNeighborhood":
+			return neighborhood(neighbors.get(args[0]));
+		case "getNodesNumber":
+			return positions.size();
+		case "getNodes":
+			return Collections.unmodifiableCollection(new ArrayList<>(positions.keySet()));
+		case "iterator":
+			return Collections.unmodifiableCollection(positions.keySet()).iterator();
+		default:
+			return objectMethod(p, m.getName(), args);
+		}
+	});
+	private int nextId;
+
+	/**
+	 * @return the environment
+	 */
+	public IEnvironment<Object> getEnvironment() {
+		return environment;
+	}
+
+	/**
+	 * @param x
+	 *            the x coordinate
+	 * @param y
+	 *            the y coordinate
+	 * @return a new node, added last
+	 */
+	public INode<Object> addNode(final double x, final double y) {
+		final int id = nextId++;
+		final INode<Object> node = proxy(INode.class, (p, m, args) -> {
+			if ("getId".equals(m.getName())) {
+				return id;
+			}
+			return objectMethod(p, m.getName(), args);
+		});
+		positions.put(node, new double[] { x, y });
+		neighbors.put(node, new ArrayList<>());
+		return node;
+	}
+
+	/**
+	 * @param node
+	 *            the node to remove
+	 */
+	public void removeNode(final INode<Object> node) {
+		positions.remove(node);
+		neighbors.remove(node);
+		for (final List<INode<Object>> row : neighbors.values()) {
+			row.remove(node);
+		}
+	}
+
+	/**
+	 * @param node
+	 *            the node
+	 * @param x
+	 *            the new x coordinate
+	 * @param y
+	 *            the new y coordinate
+	 */
+	public void move(final INode<Object> node, final double x, final double y) {
+		positions.put(node, new double[] { x, y });
+	}
+
+	/**
+	 * Adds to to the neighborhood of from, and not vice versa.
+	 * 
+	 * @param from
+	 *            the node whose neighborhood changes
+	 * @param to
+	 *            the new neighbor
+	 */
+	public void link(final INode<Object> from, final INode<Object> to) {
+		neighbors.get(from).add(to);
+	}
+
+	/**
+	 * Makes two nodes neighbors of each other.
+	 * 
+	 * @param a
+	 *            a node
+	 * @param b
+	 *            another node
+	 */
+	public void linkBoth(final INode<Object> a, final INode<Object> b) {
+		link(a, b);
+		link(b, a);
+	}
+
+	/**
+	 * @param from
+	 *            the node whose neighborhood changes
+	 * @param to
+	 *            the neighbor to remove
+	 */
+	public void unlink(final INode<Object> from, final INode<Object> to) {
+		neighbors.get(from).remove(to);
+	}
+
+	/**
+	 * @param node
+	 *            a node
+	 * @return a reaction of the node
+	 */
+	public IReaction<Object> reactionOf(final INode<Object> node) {
+		return proxy(IReaction.class, (p, m, args) -> {
+			if ("getNode".equals(m.getName())) {
+				return node;
+			}
+			return objectMethod(p, m.getName(), args);
+		});
+	}
+
+	private static IPosition position(final double[] coordinates) {
+		return proxy(IPosition.class, (p, m, args) -> {
+			switch (m.getName()) {
+			case "getCoordinate":
+				return coordinates[(Integer) args[0]];
+			case "getCartesianCoordinates":
+				return coordinates.clone();
+			case "getDimensions":
+				return coordinates.length;
+			default:
+				return objectMethod(p, m.getName(), args);
+			}
+		});
+	}
+
+	private static INeighborhood<Object> neighborhood(final List<INode<Object>> row) {
+		final List<INode<Object>> nodes = Collections.unmodifiableList(new ArrayList<>(row));
+		return proxy(INeighborhood.class, (p, m, args) -> {
+			switch (m.getName()) {
+			case "size":
+				return nodes.size();
+			case "isEmpty":
+				return nodes.isEmpty();
+			case "iterator":
+				return nodes.iterator();
+			case "getNeighbors":
+				return nodes;
+			default:
+				return objectMethod(p, m.getName(), args);
+			}
+		});
+	}
+
+	/*
+	 * Proxies are equal only to themselves.
+	 */
+	private static Object objectMethod(final Object proxy, final String name, final Object[] args) {
+		switch (name) {
+		case "equals":
+			return proxy == args[0];
+		case "hashCode":
+			return System.identityHashCode(proxy);
+		case "toString":
+			return "mock@" + Integer.toHexString(System.identityHashCode(proxy));
+		default:
+			throw new UnsupportedOperationException(name);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <I> I proxy(final Class<?> type, final InvocationHandler handler) {
+		return (I) Proxy.newProxyInstance(MockEnvironment.class.getClassLoader(), new Class<?>[] { type }, handler);
+	}
+
+}
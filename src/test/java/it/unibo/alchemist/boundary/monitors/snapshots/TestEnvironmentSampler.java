@@ -0,0 +1,236 @@
+/*
+ * Copyright (C) 2010-2015, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.monitors.snapshots;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import it.unibo.alchemist.model.interfaces.INode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that every snapshot of the triple buffer matches the environment,
+ * both after full and after incremental captures, and the compressed form
+ * of the links.
+ */
+public class TestEnvironmentSampler {
+
+	private static final int NODES = 50;
+	private static final int ROUNDS = 30;
+	private static final int MOVES = 5;
+	private static final double SIDE = 10;
+	private static final double RANGE = 2;
+
+	private MockEnvironment env;
+	private List<INode<Object>> nodes;
+	private EnvironmentSampler<Object> sampler;
+
+	/**
+	 * Builds the environment and the sampler.
+	 */
+	@Before
+	public void setUp() {
+		env = new MockEnvironment();
+		nodes = new ArrayList<>();
+		final Random rng = new Random(1);
+		for (int i = 0; i < NODES; i++) {
+			nodes.add(env.addNode(rng.nextDouble() * SIDE, rng.nextDouble() * SIDE));
+		}
+		sampler = new EnvironmentSampler<>();
+		/*
+		 * Only incremental updates after the first sample.
+		 */
+		sampler.setFullResyncPeriod(0);
+	}
+
+	/**
+	 * Moves a few nodes per round, reporting their reactions: each snapshot
+	 * acquired, whichever buffer it is, has every position up to date,
+	 * although only the entries changed are copied into it.
+	 */
+	@Test
+	public void testDeltaCopy() {
+		final Random rng = new Random(2);
+		EnvironmentSnapshot<Object> previous = null;
+		for (int round = 0; round < ROUNDS; round++) {
+			for (int m = 0; m < MOVES; m++) {
+				final INode<Object> node = nodes.get(rng.nextInt(NODES));
+				env.move(node, rng.nextDouble() * SIDE, rng.nextDouble() * SIDE);
+				sampler.reactionExecuted(env.reactionOf(node));
+			}
+			/*
+			 * Reactions that move nothing are harmless.
+			 */
+			sampler.reactionExecuted(env.reactionOf(nodes.get(rng.nextInt(NODES))));
+			sampler.sample(env.getEnvironment(), null);
+			assertTrue(sampler.hasFreshSnapshot());
+			final EnvironmentSnapshot<Object> frame = sampler.acquireLatest();
+			assertFalse(sampler.hasFreshSnapshot());
+			assertNotSame(previous, frame);
+			assertMatches(frame);
+			previous = frame;
+		}
+	}
+
+	/**
+	 * Without reactions, a snapshot keeps the previous positions until a
+	 * full resync.
+	 */
+	@Test
+	public void testUnreportedMovesWaitForResync() {
+		sampler.sample(env.getEnvironment(), null);
+		final INode<Object> node = nodes.get(0);
+		env.move(node, SIDE + 1, SIDE + 1);
+		sampler.sample(env.getEnvironment(), null);
+		assertTrue(sampler.acquireLatest().getX(0) != SIDE + 1);
+		sampler.invalidate();
+		sampler.sample(env.getEnvironment(), null);
+		assertMatches(sampler.acquireLatest());
+	}
+
+	/**
+	 * A reaction of a node added after the last sample triggers a full
+	 * resync, and the new node shows up.
+	 */
+	@Test
+	public void testNewNodes() {
+		sampler.sample(env.getEnvironment(), null);
+		final INode<Object> added = env.addNode(1, 1);
+		nodes.add(added);
+		sampler.reactionExecuted(env.reactionOf(added));
+		sampler.sample(env.getEnvironment(), null);
+		final EnvironmentSnapshot<Object> frame = sampler.acquireLatest();
+		assertEquals(NODES + 1, frame.size());
+		assertMatches(frame);
+	}
+
+	/**
+	 * The links of every node are its neighbors, sorted by index, and they
+	 * follow the nodes that move. Neighborhoods need not be symmetric.
+	 */
+	@Test
+	public void testCompressedLinks() {
+		relink();
+		/*
+		 * A link stored by one end only.
+		 */
+		env.link(nodes.get(0), nodes.get(NODES - 1));
+		sampler.setCollectLinks(true);
+		sampler.sample(env.getEnvironment(), null);
+		EnvironmentSnapshot<Object> frame = sampler.acquireLatest();
+		assertTrue(frame.hasLinks());
+		assertLinksMatch(frame);
+		assertTrue(Arrays.stream(row(frame, 0)).anyMatch(j -> j == NODES - 1));
+		final Random rng = new Random(3);
+		for (int round = 0; round < ROUNDS; round++) {
+			for (int m = 0; m < MOVES; m++) {
+				final INode<Object> node = nodes.get(rng.nextInt(NODES));
+				env.move(node, rng.nextDouble() * SIDE, rng.nextDouble() * SIDE);
+				sampler.reactionExecuted(env.reactionOf(node));
+			}
+			relink();
+			sampler.sample(env.getEnvironment(), null);
+			frame = sampler.acquireLatest();
+			assertMatches(frame);
+			assertLinksMatch(frame);
+		}
+	}
+
+	/**
+	 * Links are not collected unless requested.
+	 */
+	@Test
+	public void testNoLinksByDefault() {
+		relink();
+		sampler.sample(env.getEnvironment(), null);
+		assertFalse(sampler.acquireLatest().hasLinks());
+	}
+
+	/**
+	 * The geometry version changes when a node moves, and only then.
+	 */
+	@Test
+	public void testGeometryVersion() {
+		sampler.sample(env.getEnvironment(), null);
+		final long first = sampler.acquireLatest().getGeometryVersion();
+		sampler.reactionExecuted(env.reactionOf(nodes.get(0)));
+		sampler.sample(env.getEnvironment(), null);
+		assertEquals(first, sampler.acquireLatest().getGeometryVersion());
+		env.move(nodes.get(0), -1, -1);
+		sampler.reactionExecuted(env.reactionOf(nodes.get(0)));
+		sampler.sample(env.getEnvironment(), null);
+		assertTrue(first != sampler.acquireLatest().getGeometryVersion());
+	}
+
+	/*
+	 * Links every pair of nodes closer than the range, both ways.
+	 */
+	private void relink() {
+		for (final INode<Object> a : nodes) {
+			for (final INode<Object> b : nodes) {
+				env.unlink(a, b);
+			}
+		}
+		for (int i = 0; i < NODES; i++) {
+			for (int j = i + 1; j < NODES; j++) {
+				final double[] p = position(nodes.get(i));
+				final double[] q = position(nodes.get(j));
+				if (Math.hypot(p[0] - q[0], p[1] - q[1]) < RANGE) {
+					env.linkBoth(nodes.get(i), nodes.get(j));
+				}
+			}
+		}
+	}
+
+	private double[] position(final INode<Object> node) {
+		return env.getEnvironment().getPosition(node).getCartesianCoordinates();
+	}
+
+	private void assertMatches(final EnvironmentSnapshot<Object> frame) {
+		assertEquals(nodes.size(), frame.size());
+		for (int i = 0; i < frame.size(); i++) {
+			final INode<Object> node = frame.getNode(i);
+			final double[] p = position(node);
+			assertEquals(i, frame.indexOf(node));
+			assertEquals(node.getId(), frame.getId(i));
+			assertEquals(p[0], frame.getX(i), 0);
+			assertEquals(p[1], frame.getY(i), 0);
+		}
+	}
+
+	private void assertLinksMatch(final EnvironmentSnapshot<Object> frame) {
+		assertEquals(0, frame.getLinkOffset(0));
+		for (int i = 0; i < frame.size(); i++) {
+			final int[] expected = env.getEnvironment().getNeighborhood(frame.getNode(i)).getNeighbors().stream()
+					.mapToInt(frame::indexOf)
+					.sorted()
+					.toArray();
+			assertArrayEquals(expected, row(frame, i));
+		}
+	}
+
+	private static int[] row(final EnvironmentSnapshot<Object> frame, final int i) {
+		final int[] row = new int[frame.getLinkOffset(i + 1) - frame.getLinkOffset(i)];
+		for (int k = 0; k < row.length; k++) {
+			row[k] = frame.getLinkTarget(frame.getLinkOffset(i) + k);
+		}
+		return row;
+	}
+
+}
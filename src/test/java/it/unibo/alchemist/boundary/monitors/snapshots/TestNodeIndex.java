@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2010-2015, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.monitors.snapshots;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import it.unibo.alchemist.model.interfaces.INode;
+
+import org.junit.Test;
+
+/**
+ * Checks that indices are reused while the nodes do not change, and that
+ * their generation tells apart different mappings.
+ */
+public class TestNodeIndex {
+
+	/**
+	 * Nodes are indexed in iteration order.
+	 */
+	@Test
+	public void testIterationOrder() {
+		final MockEnvironment env = new MockEnvironment();
+		final INode<Object> a = env.addNode(0, 0);
+		final INode<Object> b = env.addNode(1, 0);
+		final NodeIndex<Object> index = NodeIndex.<Object>empty().update(env.getEnvironment());
+		assertEquals(2, index.size());
+		assertSame(a, index.getNode(0));
+		assertSame(b, index.getNode(1));
+		assertEquals(0, index.indexOf(a));
+		assertEquals(1, index.indexOf(b));
+		assertEquals(-1, index.indexOf(new MockEnvironment().addNode(0, 0)));
+	}
+
+	/**
+	 * Moving nodes keeps the same index and generation.
+	 */
+	@Test
+	public void testSameNodesSameIndex() {
+		final MockEnvironment env = new MockEnvironment();
+		final INode<Object> a = env.addNode(0, 0);
+		env.addNode(1, 0);
+		final NodeIndex<Object> index = NodeIndex.<Object>empty().update(env.getEnvironment());
+		env.move(a, 2, 2);
+		assertSame(index, index.update(env.getEnvironment()));
+	}
+
+	/**
+	 * Adding or removing a node builds a new index, of a new generation.
+	 */
+	@Test
+	public void testChangesBumpGeneration() {
+		final MockEnvironment env = new MockEnvironment();
+		final INode<Object> a = env.addNode(0, 0);
+		final INode<Object> b = env.addNode(1, 0);
+		final NodeIndex<Object> first = NodeIndex.<Object>empty().update(env.getEnvironment());
+		final INode<Object> c = env.addNode(2, 0);
+		final NodeIndex<Object> second = first.update(env.getEnvironment());
+		assertNotSame(first, second);
+		assertEquals(first.getGeneration() + 1, second.getGeneration());
+		assertEquals(2, second.indexOf(c));
+		env.removeNode(a);
+		final NodeIndex<Object> third = second.update(env.getEnvironment());
+		assertEquals(second.getGeneration() + 1, third.getGeneration());
+		assertEquals(-1, third.indexOf(a));
+		assertEquals(0, third.indexOf(b));
+		assertEquals(1, third.indexOf(c));
+	}
+
+	/**
+	 * Swapping nodes keeps their number, but changes the mapping.
+	 */
+	@Test
+	public void testSameSizeDifferentNodes() {
+		final MockEnvironment env = new MockEnvironment();
+		final INode<Object> a = env.addNode(0, 0);
+		env.addNode(1, 0);
+		final NodeIndex<Object> first = NodeIndex.<Object>empty().update(env.getEnvironment());
+		env.removeNode(a);
+		final INode<Object> c = env.addNode(2, 0);
+		final NodeIndex<Object> second = first.update(env.getEnvironment());
+		assertNotSame(first, second);
+		assertEquals(first.getGeneration() + 1, second.getGeneration());
+		assertEquals(1, second.indexOf(c));
+	}
+
+	/**
+	 * A rebuild always changes generation.
+	 */
+	@Test
+	public void testRebuild() {
+		final MockEnvironment env = new MockEnvironment();
+		env.addNode(0, 0);
+		final NodeIndex<Object> first = NodeIndex.<Object>empty().update(env.getEnvironment());
+		assertEquals(first.getGeneration() + 1, first.rebuild(env.getEnvironment()).getGeneration());
+	}
+
+}
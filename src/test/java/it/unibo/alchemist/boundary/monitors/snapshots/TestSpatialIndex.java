@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2010-2015, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.monitors.snapshots;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+/**
+ * Compares the grid queries with a linear scan of the same points.
+ */
+public class TestSpatialIndex {
+
+	private static final int POINTS = 2000;
+	private static final int QUERIES = 500;
+	private static final double SIDE = 100;
+	/*
+	 * Queries also fall outside the indexed area.
+	 */
+	private static final double QUERY_SIDE = 140;
+	private static final double QUERY_ORIGIN = -20;
+
+	private final Random rng = new Random(1);
+
+	/**
+	 * The nearest point is as close as the closest one found by a linear
+	 * scan, for queries inside and outside the grid.
+	 */
+	@Test
+	public void testNearest() {
+		final double[] xs = randomCoordinates();
+		final double[] ys = randomCoordinates();
+		final SpatialIndex index = new SpatialIndex();
+		index.build(xs, ys, POINTS);
+		for (int q = 0; q < QUERIES; q++) {
+			final double x = QUERY_ORIGIN + rng.nextDouble() * QUERY_SIDE;
+			final double y = QUERY_ORIGIN + rng.nextDouble() * QUERY_SIDE;
+			final int found = index.nearest(x, y);
+			assertEquals(closest(xs, ys, x, y), Math.hypot(xs[found] - x, ys[found] - y), 0);
+		}
+	}
+
+	/**
+	 * Points farther than the maximum distance, or rejected by the filter,
+	 * are never returned.
+	 */
+	@Test
+	public void testNearestWithinAndFiltered() {
+		final double[] xs = randomCoordinates();
+		final double[] ys = randomCoordinates();
+		final SpatialIndex index = new SpatialIndex();
+		index.build(xs, ys, POINTS);
+		for (int q = 0; q < QUERIES; q++) {
+			final double x = QUERY_ORIGIN + rng.nextDouble() * QUERY_SIDE;
+			final double y = QUERY_ORIGIN + rng.nextDouble() * QUERY_SIDE;
+			final double best = closest(xs, ys, x, y);
+			assertEquals(-1, index.nearest(x, y, best / 2));
+			final int even = index.nearest(x, y, Double.POSITIVE_INFINITY, i -> i % 2 == 0);
+			assertEquals(0, even % 2);
+			double bestEven = Double.POSITIVE_INFINITY;
+			for (int i = 0; i < POINTS; i += 2) {
+				bestEven = Math.min(bestEven, Math.hypot(xs[i] - x, ys[i] - y));
+			}
+			assertEquals(bestEven, Math.hypot(xs[even] - x, ys[even] - y), 0);
+		}
+	}
+
+	/**
+	 * Only the first n coordinates are indexed, and an empty index finds
+	 * nothing.
+	 */
+	@Test
+	public void testSizeAndEmpty() {
+		final SpatialIndex index = new SpatialIndex();
+		index.build(new double[] { 0, 1, 2 }, new double[] { 0, 1, 2 }, 0);
+		assertEquals(0, index.size());
+		assertEquals(-1, index.nearest(0, 0));
+		assertEquals(0, index.collectInside(-1, -1, 1, 1, new int[3]));
+		index.build(new double[] { 0, 1, 2 }, new double[] { 0, 1, 2 }, 2);
+		assertEquals(2, index.size());
+		assertEquals(1, index.nearest(2, 2));
+	}
+
+	/**
+	 * The points collected are exactly those inside the rectangle, borders
+	 * included.
+	 */
+	@Test
+	public void testCollectInside() {
+		final double[] xs = randomCoordinates();
+		final double[] ys = randomCoordinates();
+		/*
+		 * A point on the border of every query.
+		 */
+		xs[0] = 10;
+		ys[0] = 10;
+		final SpatialIndex index = new SpatialIndex();
+		index.build(xs, ys, POINTS);
+		final int[] found = new int[POINTS];
+		for (int q = 0; q < QUERIES; q++) {
+			final double minX = q == 0 ? 10 : QUERY_ORIGIN + rng.nextDouble() * QUERY_SIDE;
+			final double minY = q == 0 ? 10 : QUERY_ORIGIN + rng.nextDouble() * QUERY_SIDE;
+			final double maxX = minX + rng.nextDouble() * SIDE / 2;
+			final double maxY = minY + rng.nextDouble() * SIDE / 2;
+			final int count = index.collectInside(minX, minY, maxX, maxY, found);
+			final int[] actual = Arrays.copyOf(found, count);
+			Arrays.sort(actual);
+			final int[] expected = IntStream.range(0, POINTS)
+					.filter(i -> xs[i] >= minX && xs[i] <= maxX && ys[i] >= minY && ys[i] <= maxY)
+					.toArray();
+			assertArrayEquals(expected, actual);
+		}
+	}
+
+	/**
+	 * Points sharing a position are all indexed.
+	 */
+	@Test
+	public void testCoincidentPoints() {
+		final double[] xs = new double[POINTS];
+		final double[] ys = new double[POINTS];
+		Arrays.fill(xs, 1);
+		Arrays.fill(ys, 1);
+		final SpatialIndex index = new SpatialIndex();
+		index.build(xs, ys, POINTS);
+		assertEquals(POINTS, index.collectInside(0, 0, 2, 2, new int[POINTS]));
+		assertEquals(0, index.collectInside(2, 2, 3, 3, new int[POINTS]));
+	}
+
+	private double[] randomCoordinates() {
+		final double[] res = new double[POINTS];
+		for (int i = 0; i < POINTS; i++) {
+			res[i] = rng.nextDouble() * SIDE;
+		}
+		return res;
+	}
+
+	private static double closest(final double[] xs, final double[] ys, final double x, final double y) {
+		double best = Double.POSITIVE_INFINITY;
+		for (int i = 0; i < xs.length; i++) {
+			best = Math.min(best, Math.hypot(xs[i] - x, ys[i] - y));
+		}
+		return best;
+	}
+
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2010-2015, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.monitors.snapshots;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+/**
+ * Checks the hand off of buffers between producer and consumer.
+ */
+public class TestTripleBuffer {
+
+	private static final int PUBLICATIONS = 200000;
+
+	/**
+	 * The three buffers are distinct, and the producer and the consumer
+	 * never own the same one.
+	 */
+	@Test
+	public void testDistinctBuffers() {
+		final TripleBuffer<int[]> buffer = new TripleBuffer<>(() -> new int[1]);
+		assertEquals(3, new HashSet<>(buffer.getBuffers()).size());
+		for (int i = 0; i < 10; i++) {
+			assertNotSame(buffer.getBackBuffer(), buffer.acquireLatest());
+			buffer.publish();
+			assertNotSame(buffer.getBackBuffer(), buffer.acquireLatest());
+		}
+	}
+
+	/**
+	 * The consumer gets the last buffer published, and keeps it until a new
+	 * one is published.
+	 */
+	@Test
+	public void testLatestWins() {
+		final TripleBuffer<int[]> buffer = new TripleBuffer<>(() -> new int[1]);
+		assertFalse(buffer.hasFreshBuffer());
+		final int[] initial = buffer.acquireLatest();
+		assertSame(initial, buffer.acquireLatest());
+		for (int i = 1; i <= 3; i++) {
+			buffer.getBackBuffer()[0] = i;
+			buffer.publish();
+		}
+		assertTrue(buffer.hasFreshBuffer());
+		final int[] latest = buffer.acquireLatest();
+		assertEquals(3, latest[0]);
+		assertFalse(buffer.hasFreshBuffer());
+		assertSame(latest, buffer.acquireLatest());
+	}
+
+	/**
+	 * A consumer running concurrently with the producer only sees complete,
+	 * increasing publications, and never a buffer the producer is writing.
+	 * 
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for the consumer
+	 */
+	@Test
+	public void testConcurrentHandOff() throws InterruptedException {
+		/*
+		 * Both cells hold the same number once the buffer is complete.
+		 */
+		final TripleBuffer<long[]> buffer = new TripleBuffer<>(() -> new long[2]);
+		final AtomicBoolean done = new AtomicBoolean();
+		final AtomicReference<String> error = new AtomicReference<>();
+		final AtomicInteger seen = new AtomicInteger();
+		final Thread consumer = new Thread(() -> {
+			long last = 0;
+			while (!done.get() || buffer.hasFreshBuffer()) {
+				final long[] front = buffer.acquireLatest();
+				final long first = front[0];
+				final long second = front[1];
+				if (first != second) {
+					error.set("torn read: " + first + " " + second);
+				} else if (first < last) {
+					error.set("went back from " + last + " to " + first);
+				} else if (first > last) {
+					seen.incrementAndGet();
+				}
+				last = first;
+			}
+			if (last != PUBLICATIONS) {
+				error.set("last publication not seen: " + last);
+			}
+		});
+		consumer.start();
+		for (long i = 1; i <= PUBLICATIONS; i++) {
+			final long[] back = buffer.getBackBuffer();
+			back[0] = i;
+			back[1] = i;
+			buffer.publish();
+		}
+		done.set(true);
+		consumer.join();
+		assertEquals(null, error.get());
+		assertTrue(seen.get() > 0);
+	}
+
+}